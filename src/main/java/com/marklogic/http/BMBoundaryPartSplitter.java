@@ -18,6 +18,7 @@ package com.marklogic.http;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -126,6 +127,47 @@ public class BMBoundaryPartSplitter implements MultipartSplitter {
         }
     }
 
+    public boolean drain(long maxBytes) throws IOException {
+        // Nothing may be read, not even to look for the end, which could block
+        if (maxBytes <= 0) {
+            logger.finest("abandoning stream without draining");
+
+            httpStream.close();
+
+            return false;
+        }
+
+        long skipped = 0;
+
+        while (skipped < maxBytes) {
+            long rc = httpStream.skip(maxBytes - skipped);
+
+            if (rc <= 0) {
+                // skip() may return zero before the end, read() tells for sure
+                if (httpStream.read() == -1) {
+                    break;
+                }
+
+                rc = 1;
+            }
+
+            skipped += rc;
+        }
+
+        boolean atEnd = (skipped < maxBytes) || (httpStream.read() == -1);
+
+        totalBytesRead += skipped;
+
+        if (logger.isLoggable(Level.FINEST))
+            logger.finest("drained " + skipped + " bytes, end of stream=" + atEnd);
+
+        if (!atEnd) {
+            httpStream.close();
+        }
+
+        return atEnd;
+    }
+
     public boolean hasNext() throws IOException {
         flushToBoundary();
 
@@ -200,6 +242,65 @@ public class BMBoundaryPartSplitter implements MultipartSplitter {
         }
     }
 
+    public long skip(long n) throws IOException {
+        long skipped = 0;
+
+        while (skipped < n) {
+            fillBuffer();
+
+            if (readableBytes == 0) {
+                if (!atBoundary) {
+                    throw new IOException("Premature End-Of-Stream on skip.  Server connection lost?");
+                }
+                break;
+            }
+
+            int step = (int)Math.min(readableBytes, n - skipped);
+
+            byteBuffer.position(byteBuffer.position() + step);
+            readableBytes -= step;
+            skipped += step;
+        }
+
+        totalBytesRead += skipped;
+
+        return skipped;
+    }
+
+    public long transferTo(WritableByteChannel channel) throws IOException {
+        long totalWritten = 0;
+
+        while (true) {
+            fillBuffer();
+
+            if (readableBytes == 0) {
+                if (!atBoundary) {
+                    throw new IOException("Premature End-Of-Stream on transfer.  Server connection lost?");
+                }
+                break;
+            }
+
+            int position = byteBuffer.position();
+            ByteBuffer chunk = byteBuffer.duplicate();
+
+            chunk.limit(position + readableBytes);
+
+            while (chunk.hasRemaining()) {
+                channel.write(chunk);
+            }
+
+            byteBuffer.position(position + readableBytes);
+            totalBytesRead += readableBytes;
+            totalWritten += readableBytes;
+            readableBytes = 0;
+        }
+
+        if (logger.isLoggable(Level.FINEST))
+            logger.finest("transferred " + totalWritten + " bytes to channel");
+
+        return totalWritten;
+    }
+
     // ------------------------------------------------------------------------
 
     private int copyOutBytes(byte[] buffer, int offset, int length) {
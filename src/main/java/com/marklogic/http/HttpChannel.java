@@ -17,8 +17,10 @@ package com.marklogic.http;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.ByteBuffer;
 import java.nio.channels.ByteChannel;
+import java.nio.channels.FileChannel;
 import java.nio.channels.ReadableByteChannel;
 import java.nio.channels.SelectableChannel;
 import java.nio.channels.SelectionKey;
@@ -129,6 +131,14 @@ public class HttpChannel {
         return (length);
     }
 
+    public void write(int b) throws IOException {
+        if (bodyBuffer.remaining() == 0) {
+            flushRequest(false);
+        }
+
+        bodyBuffer.put((byte)b);
+    }
+
     public int write(byte[] bytes) throws IOException {
         return (write(bytes, 0, bytes.length));
     }
@@ -137,9 +147,13 @@ public class HttpChannel {
         write(value.getBytes("UTF-8"));
     }
 
+    /**
+     * Write the remaining bytes of the buffer, which may be a direct one. A buffer too big to
+     * fit in the body buffer is written to the connection as it is, without being copied.
+     */
     public void write(ByteBuffer buffer) throws IOException {
-        if (buffer.limit() < bodyBuffer.remaining()) {
-            write(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+        if (buffer.remaining() < bodyBuffer.remaining()) {
+            bodyBuffer.put(buffer);
 
             return;
         }
@@ -149,6 +163,72 @@ public class HttpChannel {
         writeBuffer(channel, buffer);
     }
 
+    /**
+     * Finish sending the request without reading the response, so that more requests can be sent
+     * on the connection first. The responses can then be read in order with another
+     * HttpChannel on the same connection, which only reads: call {@link #reset(String, String)}
+     * and {@link #suppressHeaders()} on it before each response.
+     */
+    public void sendRequest() throws IOException {
+        flushRequest(true);
+    }
+
+    /**
+     * @return true if {@link #transferFrom(FileChannel, long, long)} can be used, which it can
+     *         only on a plain socket connection.
+     */
+    public boolean isFileTransferSupported() {
+        return channel instanceof SocketChannel;
+    }
+
+    /**
+     * Send part of a file as the next bytes of the request body. Anything written before is sent
+     * first, then the file's data is passed to the connection with
+     * {@link FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)}, which lets
+     * the operating system send it without copying it through the JVM.
+     *
+     * @throws IllegalStateException
+     *             If {@link #isFileTransferSupported()} is false.
+     */
+    public void transferFrom(FileChannel file, long position, long count) throws IOException {
+        if (!isFileTransferSupported()) {
+            throw new IllegalStateException("File transfer is not supported on " + channel.getClass().getName());
+        }
+
+        flushRequest(false);
+
+        while (count > 0) {
+            long sent = file.transferTo(position, count, channel);
+
+            if (sent <= 0) {
+                throw new IOException("File ended with " + count + " bytes still to send");
+            }
+
+            position += sent;
+            count -= sent;
+        }
+    }
+
+    /**
+     * An OutputStream that writes into the request body buffer, as {@link #write(byte[])} does.
+     * When the buffer fills, it is sent, preceded by the headers the first time. So if the body may
+     * not fit in the buffer, set its length with {@link #setRequestContentLength(long)} before
+     * writing.
+     */
+    public OutputStream getRequestStream() {
+        return new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                HttpChannel.this.write(b);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                HttpChannel.this.write(b, off, len);
+            }
+        };
+    }
+
     // --------------------------------------------------------------
 
     public InputStream getResponseStream() throws IOException {
@@ -181,6 +261,10 @@ public class HttpChannel {
         requestHeaders.setHeader("Content-Length", "" + length);
     }
 
+    public void setRequestContentLength(long length) {
+        requestHeaders.setHeader("Content-Length", "" + length);
+    }
+
     // --------------------------------------------------------------
 
     public String getResponseHeader(String headerName) throws IOException {
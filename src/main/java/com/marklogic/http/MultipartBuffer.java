@@ -15,8 +15,10 @@
  */
 package com.marklogic.http;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Iterator;
 
 import com.marklogic.io.IOHelper;
 
@@ -26,6 +28,10 @@ public class MultipartBuffer {
     private HttpHeaders headers = new HttpHeaders();
 
     public long getTotalBytesRead() {
+        if (splitter == null) {
+            return 0;
+        }
+
         return splitter.getTotalBytesRead();
     }
 
@@ -39,6 +45,21 @@ public class MultipartBuffer {
         this.splitter = splitter;
     }
 
+    /**
+     * Make a buffer holding a single part that has already been split out, positioned on that
+     * part.
+     * 
+     * @param headers
+     *            The headers of the part.
+     * @param body
+     *            A stream of the part body.
+     */
+    public MultipartBuffer(HttpHeaders headers, InputStream body) {
+        this.splitter = null;
+        this.headers = headers;
+        this.partInputStream = body;
+    }
+
     public String getHeader(String name) {
         return (headers.getHeaderNormalized(name));
     }
@@ -55,6 +76,31 @@ public class MultipartBuffer {
         }
     }
 
+    /**
+     * Close this buffer like {@link #close()}, but read no more than <code>maxBytes</code> of the
+     * remaining response while doing so.
+     * 
+     * @return true if the response was read to its end, false if the limit was reached first and
+     *         the connection should be discarded rather than reused.
+     * @see MultipartSplitter#drain(long)
+     */
+    public boolean close(long maxBytes) throws IOException {
+        if (partInputStream != null) {
+            partInputStream.close();
+            partInputStream = null;
+        }
+
+        if (splitter == null) {
+            return true;
+        }
+
+        try {
+            return splitter.drain(maxBytes);
+        } finally {
+            splitter = null;
+        }
+    }
+
     public boolean isClosed() {
         return (splitter == null);
     }
@@ -72,7 +118,25 @@ public class MultipartBuffer {
             throw new IllegalStateException("No active part stream");
         }
 
-        return IOHelper.literalStringFromStream(partInputStream);
+        return IOHelper.literalStringFromStream(partInputStream, getBodyLength());
+    }
+
+    /**
+     * @return The length in bytes of the current part body, taken from its Content-Length header,
+     *         or -1 if the server did not send one.
+     */
+    public long getBodyLength() {
+        String value = getHeader("content-length");
+
+        if (value == null) {
+            return -1;
+        }
+
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
     }
 
     /**
@@ -89,7 +153,7 @@ public class MultipartBuffer {
     }
 
     public boolean next() throws IOException {
-        if (!splitter.hasNext()) {
+        if ((splitter == null) || !splitter.hasNext()) {
             partInputStream = null;
 
             return false;
@@ -106,7 +170,34 @@ public class MultipartBuffer {
     }
 
     public boolean hasNext() throws IOException {
-        return (splitter.hasNext());
+        return ((splitter != null) && splitter.hasNext());
+    }
+
+    /**
+     * Read the remainder of the current part into memory and return it as a stand-alone buffer,
+     * positioned on that part and holding a copy of its headers. The returned buffer has no further
+     * parts and is independent of this one, so it may be consumed on another thread while this
+     * buffer moves on.
+     * 
+     * @return A new MultipartBuffer holding only the current part.
+     */
+    public MultipartBuffer detachPart() throws IOException {
+        if (partInputStream == null) {
+            throw new IllegalStateException("No active part stream");
+        }
+
+        HttpHeaders partHeaders = new HttpHeaders();
+
+        for (Iterator<String> it = headers.iteratorAll(); it.hasNext();) {
+            String name = it.next();
+
+            for (String value : headers.getAllHeaders(name)) {
+                partHeaders.setHeader(name, value);
+            }
+        }
+
+        return new MultipartBuffer(partHeaders, new ByteArrayInputStream(
+                IOHelper.byteArrayFromStream(partInputStream)));
     }
 
 //	public void setBufferSize (int size)
@@ -16,6 +16,7 @@
 package com.marklogic.http;
 
 import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
 
 public interface MultipartSplitter {
     public static final int DEF_BUFFER_SIZE = 16 * 1024;
@@ -28,6 +29,31 @@ public interface MultipartSplitter {
 
     int read(byte[] buffer, int offset, int length) throws IOException;
 
+    /**
+     * Write the remainder of the current part to the given channel, straight from the splitter's
+     * internal buffer.
+     *
+     * @return The number of bytes written.
+     */
+    long transferTo(WritableByteChannel channel) throws IOException;
+
+    /**
+     * Skip up to <code>n</code> bytes of the current part, without copying them out.
+     *
+     * @return The number of bytes skipped, zero at the end of the part.
+     */
+    long skip(long n) throws IOException;
+
+    /**
+     * Skip to the end of the underlying stream, as {@link #close()} does, but read no more than
+     * <code>maxBytes</code> doing so. If the end is not reached within that many bytes, the stream
+     * is closed part way through and the connection it came from must not be reused. A limit of
+     * zero reads nothing at all, not even to check for the end, so it always returns false.
+     *
+     * @return true if the end of the stream was reached, false if the limit was hit first.
+     */
+    boolean drain(long maxBytes) throws IOException;
+
     void close() throws IOException;
     
     long getTotalBytesRead();
@@ -16,6 +16,7 @@
 package com.marklogic.http;
 
 import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
 
 public class NullPartSplitter implements MultipartSplitter {
     public long getTotalBytesRead() {
@@ -38,6 +39,18 @@ public class NullPartSplitter implements MultipartSplitter {
         return -1;
     }
 
+    public long transferTo(WritableByteChannel channel) throws IOException {
+        return 0;
+    }
+
+    public long skip(long n) throws IOException {
+        return 0;
+    }
+
+    public boolean drain(long maxBytes) throws IOException {
+        return true;
+    }
+
     public void close() {
         // do nothing
     }
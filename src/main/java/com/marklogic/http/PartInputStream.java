@@ -17,6 +17,7 @@ package com.marklogic.http;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.channels.WritableByteChannel;
 
 public class PartInputStream extends InputStream {
     private MultipartSplitter splitter;
@@ -138,6 +139,24 @@ public class PartInputStream extends InputStream {
         return (splitter.read(buf, offset, len));
     }
 
+    /**
+     * Writes the remaining bytes of this part to the given channel. The bytes are handed to the
+     * channel directly from the splitter's buffer, no intermediate array is allocated.
+     * 
+     * @param channel
+     *            - the channel to write to.
+     * @return the number of bytes written.
+     * @throws IOException
+     *             - if an I/O error occurs, or if the stream has been closed.
+     */
+    public long transferTo(WritableByteChannel channel) throws IOException {
+        if (splitter == null) {
+            throw new IOException("Splitter stream closed");
+        }
+
+        return splitter.transferTo(channel);
+    }
+
     /**
      * Repositions this stream to the position at the time the mark method was last called on this
      * input stream.
@@ -147,26 +166,20 @@ public class PartInputStream extends InputStream {
         throw new UnsupportedOperationException();
     }
 
-    // FIXME: Check this logic, should pass through to splitter?
     /**
-     * Skips over and discards n bytes of data from this input stream.
+     * Skips over and discards up to <code>n</code> bytes of data from this input stream. The
+     * bytes are stepped over in the splitter's buffer, nothing is copied.
      */
     @Override
     public long skip(long n) throws IOException {
-        // Not 1<<31; int only goes up to 2^31-1
-        if (n < (1 << 30)) {
-            byte[] buf = new byte[(int)n];
-            return read(buf, 0, (int)n);
+        if (splitter == null) {
+            throw new IOException("Splitter stream closed");
         }
 
-        byte[] buf = new byte[1 << 30];
-        long resultLen = 0;
-        long residualLen = n;
-
-        for (int m = (1 << 30); m < n; m += (1 << 30), residualLen -= (1 << 30)) {
-            resultLen += read(buf, 0, (residualLen < (1 << 30) ? (int)residualLen : (1 << 30)));
+        if (n <= 0) {
+            return 0;
         }
 
-        return resultLen;
+        return splitter.skip(n);
     }
 }
@@ -0,0 +1,199 @@
+/*
+ * Copyright 2003-2016 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * A source of bytes that can be read without holding them all in memory. A source backed by a
+ * {@link File}, {@link ByteBuffer} or byte array can be opened any number of times, one backed by
+ * an {@link InputStream} only once.
+ */
+public abstract class ByteSource {
+    /**
+     * @return A new stream positioned at the first byte of the source.
+     * @throws IllegalStateException
+     *             If the source is not replayable and has already been opened.
+     */
+    public abstract InputStream openStream() throws IOException;
+
+    /**
+     * @return true if {@link #openStream()} may be called more than once.
+     */
+    public abstract boolean isReplayable();
+
+    /**
+     * @return The number of bytes in the source, or -1 if it is not known in advance.
+     */
+    public abstract long length();
+
+    // ------------------------------------------------------------
+
+    public static ByteSource newSource(File file) {
+        return new FileSource(file);
+    }
+
+    /**
+     * The source is the remaining bytes of the buffer. Its position is not changed when the
+     * source is read.
+     */
+    public static ByteSource newSource(ByteBuffer buffer) {
+        return new BufferSource(buffer);
+    }
+
+    public static ByteSource newSource(byte[] bytes) {
+        return new BufferSource(ByteBuffer.wrap(bytes));
+    }
+
+    /**
+     * @param length
+     *            The number of bytes the stream will supply, if known, otherwise -1.
+     */
+    public static ByteSource newSource(InputStream stream, long length) {
+        return new StreamSource(stream, length);
+    }
+
+    /**
+     * Make a source from a {@link File}, {@link ByteBuffer}, byte array or {@link InputStream}.
+     *
+     * @return A new source, or null if the object is none of those.
+     */
+    public static ByteSource newSource(Object value) {
+        if (value instanceof File) {
+            return newSource((File)value);
+        }
+
+        if (value instanceof ByteBuffer) {
+            return newSource((ByteBuffer)value);
+        }
+
+        if (value instanceof byte[]) {
+            return newSource((byte[])value);
+        }
+
+        if (value instanceof InputStream) {
+            return newSource((InputStream)value, -1);
+        }
+
+        return null;
+    }
+
+    // ------------------------------------------------------------
+
+    private static class FileSource extends ByteSource {
+        private final File file;
+
+        FileSource(File file) {
+            this.file = file;
+        }
+
+        @Override
+        public InputStream openStream() throws IOException {
+            return new FileInputStream(file);
+        }
+
+        @Override
+        public boolean isReplayable() {
+            return true;
+        }
+
+        @Override
+        public long length() {
+            return file.length();
+        }
+
+        @Override
+        public String toString() {
+            return "file " + file.getPath() + " (" + file.length() + " bytes)";
+        }
+    }
+
+    private static class BufferSource extends ByteSource {
+        private final ByteBuffer buffer;
+
+        BufferSource(ByteBuffer buffer) {
+            this.buffer = buffer.duplicate();
+        }
+
+        @Override
+        public InputStream openStream() {
+            if (buffer.hasArray()) {
+                return new ByteArrayInputStream(buffer.array(), buffer.arrayOffset() + buffer.position(),
+                        buffer.remaining());
+            }
+
+            return new ByteBufferInputStream(buffer);
+        }
+
+        @Override
+        public boolean isReplayable() {
+            return true;
+        }
+
+        @Override
+        public long length() {
+            return buffer.remaining();
+        }
+
+        @Override
+        public String toString() {
+            return "buffer (" + buffer.remaining() + " bytes)";
+        }
+    }
+
+    private static class StreamSource extends ByteSource {
+        private InputStream stream;
+        private final long length;
+
+        StreamSource(InputStream stream, long length) {
+            this.stream = stream;
+            this.length = length;
+        }
+
+        @Override
+        public synchronized InputStream openStream() {
+            if (stream == null) {
+                throw new IllegalStateException("stream data has already been consumed");
+            }
+
+            InputStream tmp = stream;
+
+            stream = null;
+
+            return tmp;
+        }
+
+        @Override
+        public boolean isReplayable() {
+            return false;
+        }
+
+        @Override
+        public long length() {
+            return length;
+        }
+
+        @Override
+        public String toString() {
+            return "stream (" + ((length < 0) ? "unknown length" : (length + " bytes")) + ")";
+        }
+    }
+}
@@ -17,17 +17,22 @@ package com.marklogic.io;
 
 import java.io.BufferedReader;
 import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.io.Reader;
 import java.io.StringReader;
 import java.io.UnsupportedEncodingException;
 import java.net.URLDecoder;
 import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 
 public class IOHelper {
+    // Some VMs reserve header words in an array, stay a little under Integer.MAX_VALUE
+    private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
     private IOHelper() {
         // cannot be instantiated
     }
@@ -63,7 +68,38 @@ public class IOHelper {
     }
 
     public static String literalStringFromStream(InputStream is) throws IOException {
-        return (literalStringFromReader(new BufferedReader(newUtf8StreamReader(is))));
+        return literalStringFromStream(is, -1);
+    }
+
+    /**
+     * Read a stream of UTF-8 to its end as a String. The bytes are read into a single array,
+     * sized by <code>sizeHint</code> if it is not negative, and decoded from there in one step.
+     * 
+     * @param is
+     *            The stream to read, it is not closed.
+     * @param sizeHint
+     *            The expected number of bytes, or a negative value if not known.
+     */
+    public static String literalStringFromStream(InputStream is, long sizeHint) throws IOException {
+        byte[] bytes = byteArrayFromStream(is, sizeHint);
+
+        return utf8String(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Decode a run of UTF-8 bytes. Text that is pure ASCII, as markup mostly is, is copied
+     * straight into the String without going through the UTF-8 decoder.
+     */
+    public static String utf8String(byte[] bytes, int offset, int length) {
+        int end = offset + length;
+
+        for (int i = offset; i < end; i++) {
+            if (bytes[i] < 0) {
+                return new String(bytes, offset, length, StandardCharsets.UTF_8);
+            }
+        }
+
+        return new String(bytes, offset, length, StandardCharsets.ISO_8859_1);
     }
 
     public static String stringFromReader(BufferedReader br) throws IOException {
@@ -108,15 +144,61 @@ public class IOHelper {
     }
 
     public static byte[] byteArrayFromStream(InputStream inputStream) throws IOException {
-        ByteArrayOutputStream bos = new ByteArrayOutputStream();
-        byte[] buffer = new byte[10240];
-        int rc;
+        return byteArrayFromStream(inputStream, -1);
+    }
+
+    /**
+     * Read a stream to its end into a byte array. If the length of the content is known, pass it
+     * as <code>sizeHint</code> and the data is read straight into an array of that size, with no
+     * further copying. Otherwise the initial size is taken from {@link InputStream#available()}
+     * and the array grows as needed. A wrong hint costs a copy, not correctness.
+     * 
+     * @param inputStream
+     *            The stream to read, it is not closed.
+     * @param sizeHint
+     *            The expected number of bytes, or a negative value if not known.
+     * @return The content of the stream.
+     * @throws IOException
+     *             If the stream cannot be read, or holds more than fits in an array.
+     */
+    public static byte[] byteArrayFromStream(InputStream inputStream, long sizeHint) throws IOException {
+        int capacity;
 
-        while ((rc = inputStream.read(buffer)) > 0) {
-            bos.write(buffer, 0, rc);
+        if (sizeHint >= 0) {
+            capacity = (int)Math.min(sizeHint, MAX_ARRAY_SIZE);
+        } else {
+            capacity = Math.max(inputStream.available(), 10240);
         }
 
-        return (bos.toByteArray());
+        byte[] buffer = new byte[capacity];
+        int count = 0;
+
+        while (true) {
+            if (count == buffer.length) {
+                int b = inputStream.read();
+
+                if (b < 0) {
+                    break;
+                }
+
+                if (count == MAX_ARRAY_SIZE) {
+                    throw new IOException("Stream content too large for a byte array");
+                }
+
+                buffer = Arrays.copyOf(buffer, (int)Math.min(Math.max(2L * count, 10240), MAX_ARRAY_SIZE));
+                buffer[count++] = (byte)b;
+            }
+
+            int rc = inputStream.read(buffer, count, buffer.length - count);
+
+            if (rc <= 0) {
+                break;
+            }
+
+            count += rc;
+        }
+
+        return (count == buffer.length) ? buffer : Arrays.copyOf(buffer, count);
     }
 
     // -------------------------------------------------------
@@ -143,13 +225,70 @@ public class IOHelper {
         }
     }
 
-    @SuppressWarnings("deprecation")
+    /**
+     * URL-encode a string as UTF-8 and append the result. Letters, digits and <code>.-*_</code>
+     * are left as they are, a space becomes <code>+</code> and everything else is percent-encoded,
+     * the same as {@link URLEncoder#encode(String, String)} does.
+     * 
+     * @param sb
+     *            A StringBuffer to which the encoded characters will be appended.
+     * @param value
+     *            The string to encode.
+     */
     public static void urlEncodeToStringBuffer(StringBuffer sb, String value) {
-        try {
-            urlEncodeStringToStringBuffer(value, sb, "UTF-8");
-        } catch (UnsupportedEncodingException e) {
-            // should never happen, UFT-8 must be present
-            sb.append(URLEncoder.encode(value));
+        UrlEncodeBuffer buffer = URL_ENCODE_BUFFER.get();
+        int len = value.length();
+        int i = 0;
+
+        while (i < len) {
+            i = buffer.encode(value, i);
+            buffer.appendTo(sb);
+        }
+    }
+
+    /**
+     * URL-encode a string as for {@link #urlEncodeToStringBuffer(StringBuffer, String)}, writing
+     * the encoded bytes to a stream as they are produced rather than building the result in
+     * memory first.
+     * 
+     * @param out
+     *            The stream to write to.
+     * @param value
+     *            The string to encode.
+     */
+    public static void urlEncodeToStream(OutputStream out, String value) throws IOException {
+        UrlEncodeBuffer buffer = URL_ENCODE_BUFFER.get();
+        int len = value.length();
+        int i = 0;
+
+        while (i < len) {
+            i = buffer.encode(value, i);
+            out.write(buffer.bytes, 0, buffer.length);
+        }
+    }
+
+    /**
+     * URL-encode the bytes read from a stream, which should be UTF-8, writing the result to
+     * another stream a chunk at a time. The output is the same as encoding the decoded string
+     * with {@link #urlEncodeToStream(OutputStream, String)}, but the string is never built.
+     * 
+     * @param out
+     *            The stream to write to.
+     * @param in
+     *            The stream to encode. It is read to the end but not closed.
+     */
+    public static void urlEncodeToStream(OutputStream out, InputStream in) throws IOException {
+        UrlEncodeBuffer buffer = URL_ENCODE_BUFFER.get();
+        byte[] bytes = new byte[UrlEncodeBuffer.CHUNK_SIZE];
+        int rc;
+
+        while ((rc = in.read(bytes)) != -1) {
+            int i = 0;
+
+            while (i < rc) {
+                i = buffer.encode(bytes, i, rc);
+                out.write(buffer.bytes, 0, buffer.length);
+            }
         }
     }
 
@@ -171,9 +310,9 @@ public class IOHelper {
     }
 
     /**
-     * This is a "quick" URL encoder. If the string contains only ascii printable chars, then a
-     * lightweight routine is used to encode the string. Otherwise, the standard library URL encoder
-     * is used.
+     * URL-encode a string in the given character encoding. UTF-8 is handled by the same single
+     * pass encoder as {@link #urlEncodeToStringBuffer(StringBuffer, String)}, other encodings are
+     * passed to the standard library URL encoder if the string contains any non-ascii chars.
      * 
      * @param s
      *            string to be "soft" encoded.
@@ -183,49 +322,18 @@ public class IOHelper {
      */
     public static void urlEncodeStringToStringBuffer(String s, StringBuffer sb, String encoding)
             throws UnsupportedEncodingException {
-        if (containsNonAscii(s)) {
+        if (!"UTF-8".equalsIgnoreCase(encoding) && containsNonAscii(s)) {
             // non-ascii chars seen, use the charset-aware library encoder
             sb.append(URLEncoder.encode(s, encoding));
 
             return;
         }
 
-        int len = s.length();
-
-        for (int i = 0; i < len; i++) {
-            char c = s.charAt(i);
-
-            if (c == ' ') {
-                // space is a special case
-                sb.append("+");
-
-                continue;
-            }
-
-            if (needsEncoding(c)) {
-                hexEncodeCharToStringBuffer(sb, c);
-
-                continue;
-            }
-
-            sb.append(c);
-        }
+        urlEncodeToStringBuffer(sb, s);
     }
 
     // -----------------------------------------------------
 
-    private static boolean needsEncoding(char c) {
-        if (Character.isLetterOrDigit(c)) {
-            return (false);
-        }
-
-        if ((c == '*') || (c == '_') || (c == '.') || (c == '-')) {
-            return (false);
-        }
-
-        return (true);
-    }
-
     private static boolean containsNonAscii(String s) {
         int len = s.length();
 
@@ -238,19 +346,130 @@ public class IOHelper {
         return (false);
     }
 
-    private static void hexEncodeCharToStringBuffer(StringBuffer sb, char c) {
-        sb.append("%");
+    private static final ThreadLocal<UrlEncodeBuffer> URL_ENCODE_BUFFER = new ThreadLocal<UrlEncodeBuffer>() {
+        @Override
+        protected UrlEncodeBuffer initialValue() {
+            return new UrlEncodeBuffer();
+        }
+    };
 
-        String hex = Integer.toHexString(c).toUpperCase();
+    /**
+     * A per-thread buffer that strings are URL-encoded into a chunk at a time. Chars go straight
+     * to percent-encoded UTF-8 in one pass, whatever mix of ascii and non-ascii they are.
+     */
+    private static final class UrlEncodeBuffer {
+        private static final int CHUNK_SIZE = 4096;
+        // A supplementary char is four UTF-8 bytes, each of them percent-encoded
+        private static final int MAX_CHAR_BYTES = 12;
+        private static final byte[] HEX_DIGITS = "0123456789ABCDEF".getBytes();
+        private static final boolean[] UNRESERVED = new boolean[128];
+
+        static {
+            for (char c = 'a'; c <= 'z'; c++) {
+                UNRESERVED[c] = true;
+            }
+            for (char c = 'A'; c <= 'Z'; c++) {
+                UNRESERVED[c] = true;
+            }
+            for (char c = '0'; c <= '9'; c++) {
+                UNRESERVED[c] = true;
+            }
+            UNRESERVED['.'] = true;
+            UNRESERVED['-'] = true;
+            UNRESERVED['*'] = true;
+            UNRESERVED['_'] = true;
+        }
 
-        if (hex.length() == 1) {
-            sb.append("0");
+        private final byte[] bytes = new byte[CHUNK_SIZE + MAX_CHAR_BYTES];
+        private final char[] chars = new char[bytes.length];
+        private int length;
+
+        /**
+         * Encode chars of <code>s</code> from index <code>i</code> until the end of the string or
+         * until the buffer is full.
+         * 
+         * @return The index of the next char to encode.
+         */
+        int encode(String s, int i) {
+            int end = s.length();
+
+            length = 0;
+
+            while ((i < end) && (length < CHUNK_SIZE)) {
+                char c = s.charAt(i++);
+
+                if (c < 0x80) {
+                    if (UNRESERVED[c]) {
+                        bytes[length++] = (byte)c;
+                    } else if (c == ' ') {
+                        bytes[length++] = '+';
+                    } else {
+                        escape(c);
+                    }
+                } else if (c < 0x800) {
+                    escape(0xc0 | (c >> 6));
+                    escape(0x80 | (c & 0x3f));
+                } else if (Character.isHighSurrogate(c) && (i < end) && Character.isLowSurrogate(s.charAt(i))) {
+                    int cp = Character.toCodePoint(c, s.charAt(i++));
+
+                    escape(0xf0 | (cp >> 18));
+                    escape(0x80 | ((cp >> 12) & 0x3f));
+                    escape(0x80 | ((cp >> 6) & 0x3f));
+                    escape(0x80 | (cp & 0x3f));
+                } else if (Character.isSurrogate(c)) {
+                    // unpaired surrogate, the library encoder writes '?' for these
+                    escape('?');
+                } else {
+                    escape(0xe0 | (c >> 12));
+                    escape(0x80 | ((c >> 6) & 0x3f));
+                    escape(0x80 | (c & 0x3f));
+                }
+            }
+
+            return i;
+        }
+
+        /**
+         * Encode bytes of <code>b</code> from index <code>i</code> until <code>end</code> or
+         * until the buffer is full. Bytes are encoded one by one, so UTF-8 input comes out the
+         * same as the chars it decodes to would from {@link #encode(String, int)}.
+         * 
+         * @return The index of the next byte to encode.
+         */
+        int encode(byte[] b, int i, int end) {
+            length = 0;
+
+            while ((i < end) && (length < CHUNK_SIZE)) {
+                int c = b[i++] & 0xff;
+
+                if (c < 0x80 && UNRESERVED[c]) {
+                    bytes[length++] = (byte)c;
+                } else if (c == ' ') {
+                    bytes[length++] = '+';
+                } else {
+                    escape(c);
+                }
+            }
+
+            return i;
         }
 
-        sb.append(hex);
+        void appendTo(StringBuffer sb) {
+            for (int i = 0; i < length; i++) {
+                chars[i] = (char)bytes[i];
+            }
+
+            sb.append(chars, 0, length);
+        }
+
+        private void escape(int b) {
+            bytes[length++] = '%';
+            bytes[length++] = HEX_DIGITS[(b >> 4) & 0xf];
+            bytes[length++] = HEX_DIGITS[b & 0xf];
+        }
     }
 
-    private static byte[] getUtf8Bytes(String is) {
+    public static byte[] getUtf8Bytes(String is) {
         try {
             return (is.getBytes("UTF-8"));
         } catch (UnsupportedEncodingException e) {
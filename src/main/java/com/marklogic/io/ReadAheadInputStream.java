@@ -0,0 +1,192 @@
+/*
+ * Copyright 2003-2016 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.Executor;
+
+/**
+ * An InputStream decorator that reads ahead of its consumer. A background task copies the
+ * underlying stream into a fixed size ring buffer for as long as there is room in it, so that data
+ * keeps arriving while the consumer is busy elsewhere. The underlying stream is only ever read by
+ * that task, which ends when it reaches EOF or gets an exception. Bytes read before an exception
+ * are delivered first, then the exception is thrown to the consumer. The task runs for as long as
+ * the stream is open, so the executor must not limit how many run at once.
+ */
+public class ReadAheadInputStream extends InputStream {
+    private final InputStream stream;
+    private final byte[] ring;
+    private int head = 0;
+    private int count = 0;
+    private boolean eof = false;
+    private boolean closed = false;
+    private IOException failure = null;
+
+    public ReadAheadInputStream(InputStream stream, int bufferSize, Executor executor) {
+        this.stream = stream;
+        this.ring = new byte[bufferSize];
+
+        executor.execute(new Runnable() {
+            public void run() {
+                fill();
+            }
+        });
+    }
+
+    // ------------------------------------------------------------
+
+    @Override
+    public synchronized int read() throws IOException {
+        if (!awaitData()) {
+            return -1;
+        }
+
+        int b = ring[head] & 0xff;
+
+        head = (head + 1) % ring.length;
+        count--;
+
+        notifyAll();
+
+        return b;
+    }
+
+    @Override
+    public synchronized int read(byte buffer[], int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+
+        if (!awaitData()) {
+            return -1;
+        }
+
+        int n = Math.min(len, Math.min(count, ring.length - head));
+
+        System.arraycopy(ring, head, buffer, off, n);
+
+        head = (head + n) % ring.length;
+        count -= n;
+
+        notifyAll();
+
+        return n;
+    }
+
+    @Override
+    public synchronized int available() {
+        return count;
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+
+            closed = true;
+            count = 0;
+
+            notifyAll();
+        }
+
+        stream.close();
+    }
+
+    // ------------------------------------------------------------
+
+    // Wait until there is something to read, returning false at the end of the stream
+    private boolean awaitData() throws IOException {
+        while (count == 0) {
+            if (failure != null) {
+                throw failure;
+            }
+
+            if (eof || closed) {
+                return false;
+            }
+
+            awaitChange();
+        }
+
+        return true;
+    }
+
+    private void awaitChange() throws InterruptedIOException {
+        try {
+            wait();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+
+            throw new InterruptedIOException("Interrupted waiting for read-ahead data");
+        }
+    }
+
+    // Runs on the executor. Reads straight into the free region following the buffered bytes,
+    // which the consumer never looks at until count is advanced.
+    private void fill() {
+        try {
+            while (true) {
+                int tail;
+                int space;
+
+                synchronized (this) {
+                    while ((count == ring.length) && !closed) {
+                        wait();
+                    }
+
+                    if (closed) {
+                        return;
+                    }
+
+                    tail = (head + count) % ring.length;
+                    space = Math.min(ring.length - count, ring.length - tail);
+                }
+
+                int rc = stream.read(ring, tail, space);
+
+                synchronized (this) {
+                    if (rc == -1) {
+                        eof = true;
+                    } else if (!closed) {
+                        count += rc;
+                    }
+
+                    notifyAll();
+
+                    if (eof || closed) {
+                        return;
+                    }
+                }
+            }
+        } catch (IOException e) {
+            fail(e);
+        } catch (InterruptedException e) {
+            fail(new InterruptedIOException("Read-ahead interrupted"));
+        } catch (RuntimeException e) {
+            fail(new IOException("Read-ahead failed: " + e, e));
+        }
+    }
+
+    private synchronized void fail(IOException e) {
+        failure = e;
+
+        notifyAll();
+    }
+}
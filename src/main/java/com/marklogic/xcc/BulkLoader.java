@@ -0,0 +1,1015 @@
+/*
+ * Copyright 2003-2016 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.xcc;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.net.InetSocketAddress;
+import java.nio.channels.FileChannel;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.marklogic.xcc.exceptions.QueryException;
+import com.marklogic.xcc.exceptions.RequestException;
+import com.marklogic.xcc.exceptions.ServerConnectionException;
+import com.marklogic.xcc.impl.FileRegionContent;
+import com.marklogic.xcc.impl.SSLSocketPoolProvider;
+import com.marklogic.xcc.impl.SessionImpl;
+import com.marklogic.xcc.impl.SocketPoolProvider;
+import com.marklogic.xcc.impl.handlers.ContentInsertController;
+import com.marklogic.xcc.spi.ConnectionProvider;
+import com.marklogic.xcc.spi.SingleHostAddress;
+
+/**
+ * <p>
+ * Loads a stream of {@link Content} into the contentbase using several threads. The stream is
+ * cut into batches of {@link #setBatchSize(int)} documents, and each batch is inserted with
+ * {@link Session#insertContent(Content[])} by one of {@link #setThreadCount(int)} worker threads.
+ * Each worker has its own {@link Session}, a copy of the one this loader was created with, so
+ * it uses the same credentials, contentbase, default {@link RequestOptions} and logger.
+ * </p>
+ * <p>
+ * Batches wait in a queue of at most {@link #setQueueCapacity(int)} batches on their way to the
+ * workers. When it is full, reading the stream blocks, so a stream that produces documents
+ * faster than they can be inserted is held back rather than buffered.
+ * </p>
+ * <p>
+ * {@link Session#insertContent(Content[])} already retries a batch for a while when the
+ * connection fails. If it still fails, and the failure is one worth retrying, the loader
+ * rewinds the batch's content and tries it again, up to {@link #setMaxBatchRetries(int)}
+ * times. A batch holding any content that cannot be rewound, such as content made from an
+ * {@link java.io.InputStream}, is never retried by the loader, since it cannot tell how much of
+ * that content has been read.
+ * </p>
+ * <p>
+ * By default the server chooses a forest for each document. With {@link #setPlacement(Placement)}
+ * the loader places the documents itself, spreading them evenly over the contentbase's forests,
+ * and makes each batch out of documents for a single forest. Each batch is then sent straight to
+ * the host the forest is on, unless {@link #setRouteToForestHosts(boolean)} is turned off, so the
+ * server does not have to pass documents between hosts.
+ * </p>
+ * <p>
+ * Usage:
+ * </p>
+ *
+ * <pre>
+ * BulkLoader loader = new BulkLoader(session);
+ *
+ * loader.setThreadCount(8);
+ * loader.setBatchSize(200);
+ * loader.setListener(myListener);
+ *
+ * BulkLoader.Progress progress = loader.load(contentIterator);
+ * </pre>
+ */
+public class BulkLoader {
+    public static final int DEFAULT_THREAD_COUNT = 4;
+    public static final int DEFAULT_BATCH_SIZE = 100;
+    public static final int DEFAULT_MAX_BATCH_RETRIES = 3;
+    public static final long DEFAULT_BATCH_RETRY_DELAY_MILLIS = 1000;
+
+    // A batch with no documents, which tells a worker there is nothing more to do
+    private static final Content[] END_OF_STREAM = new Content[0];
+    private static final long OFFER_WAIT_MILLIS = 100;
+    private static final long MAX_BATCH_RETRY_DELAY_MILLIS = 60000;
+    private static final long WORKER_STOP_WAIT_MILLIS = 5000;
+
+    private final Session session;
+    private int threadCount = DEFAULT_THREAD_COUNT;
+    private int batchSize = DEFAULT_BATCH_SIZE;
+    private int queueCapacity = 0;
+    private int maxBatchRetries = DEFAULT_MAX_BATCH_RETRIES;
+    private long batchRetryDelayMillis = DEFAULT_BATCH_RETRY_DELAY_MILLIS;
+    private boolean stopOnFailure = true;
+    private Listener listener = null;
+    private Placement placement = Placement.NONE;
+    private boolean routeToForestHosts = true;
+
+    /**
+     * @param session
+     *            The {@link Session} to copy for each worker thread. It is not used to insert
+     *            anything itself.
+     */
+    public BulkLoader(Session session) {
+        this.session = session;
+    }
+
+    // ------------------------------------------------------------
+
+    /**
+     * How a {@link BulkLoader} chooses the forest for each document.
+     */
+    public static enum Placement {
+        /**
+         * The loader does not place documents, the server chooses a forest for each one.
+         */
+        NONE,
+
+        /**
+         * Each document goes to a forest chosen by a hash of its URI, so a URI is always loaded
+         * into the same forest, as long as the contentbase's forests do not change.
+         */
+        URI_HASH,
+
+        /**
+         * Documents are dealt out to the forests in turn.
+         */
+        ROUND_ROBIN
+    }
+
+    /**
+     * Receives notice of what a {@link BulkLoader} is doing. Methods are called on the worker
+     * thread that inserted the batch concerned, so they may be called concurrently and should
+     * return quickly.
+     */
+    public interface Listener {
+        /**
+         * A batch has been inserted.
+         *
+         * @param batch
+         *            The content in the batch.
+         * @param progress
+         *            The state of the load, including this batch.
+         */
+        void batchInserted(Content[] batch, Progress progress);
+
+        /**
+         * A batch failed and is about to be retried.
+         *
+         * @param batch
+         *            The content in the batch.
+         * @param cause
+         *            The failure.
+         * @param retry
+         *            The number of this retry, starting at one.
+         */
+        void batchRetrying(Content[] batch, RequestException cause, int retry);
+
+        /**
+         * A batch failed and will not be retried.
+         *
+         * @param batch
+         *            The content in the batch.
+         * @param cause
+         *            The failure.
+         * @param progress
+         *            The state of the load, including this batch.
+         */
+        void batchFailed(Content[] batch, RequestException cause, Progress progress);
+    }
+
+    /**
+     * A snapshot of the state of a load.
+     */
+    public static class Progress {
+        private final long documents;
+        private final long batches;
+        private final long failedDocuments;
+        private final long failedBatches;
+        private final long elapsedMillis;
+
+        Progress(long documents, long batches, long failedDocuments, long failedBatches, long elapsedMillis) {
+            this.documents = documents;
+            this.batches = batches;
+            this.failedDocuments = failedDocuments;
+            this.failedBatches = failedBatches;
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        /**
+         * @return The number of documents inserted.
+         */
+        public long getDocumentCount() {
+            return documents;
+        }
+
+        /**
+         * @return The number of batches inserted.
+         */
+        public long getBatchCount() {
+            return batches;
+        }
+
+        /**
+         * @return The number of documents in batches that failed.
+         */
+        public long getFailedDocumentCount() {
+            return failedDocuments;
+        }
+
+        /**
+         * @return The number of batches that failed.
+         */
+        public long getFailedBatchCount() {
+            return failedBatches;
+        }
+
+        /**
+         * @return The time since the load started, in milliseconds.
+         */
+        public long getElapsedMillis() {
+            return elapsedMillis;
+        }
+
+        /**
+         * @return The average number of documents inserted per second since the load started.
+         */
+        public double getDocumentsPerSecond() {
+            return (elapsedMillis == 0) ? 0 : ((documents * 1000.0) / elapsedMillis);
+        }
+
+        @Override
+        public String toString() {
+            return "documents=" + documents + ", batches=" + batches + ", failedDocuments=" + failedDocuments
+                    + ", failedBatches=" + failedBatches + ", elapsedMillis=" + elapsedMillis;
+        }
+    }
+
+    // ------------------------------------------------------------
+
+    public int getThreadCount() {
+        return threadCount;
+    }
+
+    /**
+     * @param threadCount
+     *            The number of worker threads, each with its own {@link Session}. The default is
+     *            {@link #DEFAULT_THREAD_COUNT}. When batches are sent to forest hosts, the workers
+     *            are dealt out to the hosts in turn, so the number on each host differs by at most
+     *            one, and there are more workers than this if there are more hosts, since each
+     *            host needs at least one.
+     */
+    public void setThreadCount(int threadCount) {
+        if (threadCount < 1) {
+            throw new IllegalArgumentException("Thread count must be at least one: " + threadCount);
+        }
+
+        this.threadCount = threadCount;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * @param batchSize
+     *            The number of documents inserted by each call to
+     *            {@link Session#insertContent(Content[])}, and so committed together. The default
+     *            is {@link #DEFAULT_BATCH_SIZE}.
+     */
+    public void setBatchSize(int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be at least one: " + batchSize);
+        }
+
+        this.batchSize = batchSize;
+    }
+
+    public int getQueueCapacity() {
+        return (queueCapacity == 0) ? (threadCount * 2) : queueCapacity;
+    }
+
+    /**
+     * @param queueCapacity
+     *            The number of batches that may wait for a worker. Zero, the default, means twice
+     *            the thread count.
+     */
+    public void setQueueCapacity(int queueCapacity) {
+        if (queueCapacity < 0) {
+            throw new IllegalArgumentException("Queue capacity cannot be negative: " + queueCapacity);
+        }
+
+        this.queueCapacity = queueCapacity;
+    }
+
+    public int getMaxBatchRetries() {
+        return maxBatchRetries;
+    }
+
+    /**
+     * @param maxBatchRetries
+     *            The number of times a failed batch is retried by the loader, on top of the
+     *            retries made by {@link Session#insertContent(Content[])} itself. The default is
+     *            {@link #DEFAULT_MAX_BATCH_RETRIES}.
+     */
+    public void setMaxBatchRetries(int maxBatchRetries) {
+        this.maxBatchRetries = Math.max(maxBatchRetries, 0);
+    }
+
+    public long getBatchRetryDelayMillis() {
+        return batchRetryDelayMillis;
+    }
+
+    /**
+     * @param batchRetryDelayMillis
+     *            The time to wait before the first retry of a batch. It doubles for each further
+     *            retry, but not beyond a minute, unless the first delay is already longer. The
+     *            default is {@link #DEFAULT_BATCH_RETRY_DELAY_MILLIS}.
+     */
+    public void setBatchRetryDelayMillis(long batchRetryDelayMillis) {
+        this.batchRetryDelayMillis = Math.max(batchRetryDelayMillis, 0);
+    }
+
+    public boolean isStopOnFailure() {
+        return stopOnFailure;
+    }
+
+    /**
+     * @param stopOnFailure
+     *            If true, the default, the first batch that fails for good stops the load, and
+     *            {@link #load(Iterator)} throws its exception. If false, failed batches are
+     *            reported to the {@link Listener} and counted in the {@link Progress}, and the
+     *            load carries on.
+     */
+    public void setStopOnFailure(boolean stopOnFailure) {
+        this.stopOnFailure = stopOnFailure;
+    }
+
+    public Listener getListener() {
+        return listener;
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    public Placement getPlacement() {
+        return placement;
+    }
+
+    /**
+     * <p>
+     * Set how the loader chooses a forest for each document. The default is
+     * {@link Placement#NONE}, which leaves it to the server.
+     * </p>
+     * <p>
+     * Otherwise the forests are looked up once, when {@link #load(Iterator)} starts, leaving out
+     * any that do not allow updates, such as read-only and delete-only forests, and each
+     * document is given a forest with {@link ContentCreateOptions#setPlaceKeys(BigInteger[])}.
+     * Documents whose options already have place keys are left where they are put. A batch is
+     * only filled from documents for one forest, so up to a batch for each forest may be held
+     * while it fills. The {@link Content} given to the {@link Listener} is then a copy of the
+     * original with the forest added to its options.
+     * </p>
+     *
+     * @param placement
+     *            How documents are placed, not null.
+     */
+    public void setPlacement(Placement placement) {
+        if (placement == null) {
+            throw new IllegalArgumentException("Placement cannot be null");
+        }
+
+        this.placement = placement;
+    }
+
+    public boolean isRouteToForestHosts() {
+        return routeToForestHosts;
+    }
+
+    /**
+     * @param routeToForestHosts
+     *            If true, the default, and documents are placed by the loader, each batch is sent
+     *            to the host its forest is on, on the same port and with the same security
+     *            options as the loader's {@link Session}. There is at least one worker thread for
+     *            each host, even if that is more than {@link #getThreadCount()}. Batches for the
+     *            {@link Session}'s own host use its connections, the other hosts get connections
+     *            of their own, which are closed when the load ends. Turn this off if the hosts
+     *            cannot be reached directly, for instance from behind a load balancer. If false,
+     *            every batch goes to the {@link Session}'s own host.
+     */
+    public void setRouteToForestHosts(boolean routeToForestHosts) {
+        this.routeToForestHosts = routeToForestHosts;
+    }
+
+    // ------------------------------------------------------------
+
+    /**
+     * Insert every {@link Content} from the iterator, and wait until they have all been inserted.
+     * The iterator is read on the calling thread.
+     *
+     * @param contents
+     *            The content to insert.
+     * @return The final state of the load.
+     * @throws RequestException
+     *             If the forests cannot be looked up for placement, or a batch fails for good and
+     *             {@link #isStopOnFailure()} is true. Batches
+     *             already queued are not inserted, those being inserted are allowed to finish.
+     * @throws InterruptedException
+     *             If the calling thread is interrupted while waiting. The workers are stopped, and
+     *             given a few seconds to finish before the load returns.
+     * @throws RuntimeException
+     *             If a worker thread fails unexpectedly. The load is stopped.
+     */
+    public Progress load(Iterator<Content> contents) throws RequestException, InterruptedException {
+        Placer placer = new Placer();
+        int workerCount = Math.max(threadCount, placer.routes.size());
+        Load load = new Load(placer.routes.size());
+        List<Thread> workers = new ArrayList<Thread>(workerCount);
+
+        for (int i = 0; i < workerCount; i++) {
+            int route = i % placer.routes.size();
+            SessionImpl workerSession = new SessionImpl(session.getContentSource(), placer.routes.get(route),
+                    session.getUserCredentials(), session.getContentBaseName());
+            Thread worker = new Thread(new Worker(load, route, workerSession), "XCC bulk loader " + (i + 1));
+
+            worker.setDaemon(true);
+            workers.add(worker);
+            worker.start();
+        }
+
+        List<List<Content>> pending = new ArrayList<List<Content>>(placer.groupCount());
+
+        for (int i = 0; i < placer.groupCount(); i++) {
+            pending.add(new ArrayList<Content>(batchSize));
+        }
+
+        try {
+            while (contents.hasNext() && !load.isStopped()) {
+                Content content = contents.next();
+                int group = placer.group(content);
+                List<Content> batch = pending.get(group);
+
+                batch.add(placer.place(content, group));
+
+                if (batch.size() == batchSize) {
+                    load.put(placer.route(group), batch.toArray(new Content[batch.size()]));
+                    batch.clear();
+                }
+            }
+
+            for (int group = 0; group < pending.size(); group++) {
+                List<Content> batch = pending.get(group);
+
+                if ((batch.size() > 0) && !load.isStopped()) {
+                    load.put(placer.route(group), batch.toArray(new Content[batch.size()]));
+                    batch.clear();
+                }
+            }
+
+            for (int i = 0; i < workerCount; i++) {
+                load.put(i % placer.routes.size(), END_OF_STREAM);
+            }
+
+            for (Thread worker : workers) {
+                worker.join();
+            }
+        } catch (InterruptedException e) {
+            load.stop(null);
+
+            for (Thread worker : workers) {
+                worker.interrupt();
+            }
+
+            awaitStopped(workers);
+
+            throw e;
+        } catch (RuntimeException e) {
+            load.stop(null);
+
+            awaitStopped(workers);
+
+            throw e;
+        } finally {
+            // Whatever is left was never handed to a worker
+            for (List<Content> batch : pending) {
+                for (Content content : batch) {
+                    content.close();
+                }
+            }
+
+            load.discardQueued();
+            placer.shutdown();
+        }
+
+        if (load.crash != null) {
+            throw load.crash;
+        }
+
+        if (load.failure != null) {
+            throw load.failure;
+        }
+
+        return load.progress();
+    }
+
+    // Give stopped workers a while to let go of their connections before those are closed, but
+    // don't hold up the caller for a worker stuck in a request
+    private void awaitStopped(List<Thread> workers) {
+        long deadline = System.currentTimeMillis() + WORKER_STOP_WAIT_MILLIS;
+
+        try {
+            for (Thread worker : workers) {
+                long wait = deadline - System.currentTimeMillis();
+
+                if (wait <= 0) {
+                    break;
+                }
+
+                worker.join(wait);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // ------------------------------------------------------------
+
+    /**
+     * The state shared by the thread reading the stream and the workers during one load.
+     */
+    private class Load {
+        private final List<BlockingQueue<Content[]>> queues;
+        private final long startMillis = System.currentTimeMillis();
+        private final AtomicLong documents = new AtomicLong();
+        private final AtomicLong batches = new AtomicLong();
+        private final AtomicLong failedDocuments = new AtomicLong();
+        private final AtomicLong failedBatches = new AtomicLong();
+        private volatile boolean stopped = false;
+        private volatile RequestException failure = null;
+        private volatile RuntimeException crash = null;
+
+        // One queue per route, each with the full capacity
+        Load(int routeCount) {
+            queues = new ArrayList<BlockingQueue<Content[]>>(routeCount);
+
+            for (int i = 0; i < routeCount; i++) {
+                queues.add(new ArrayBlockingQueue<Content[]>(getQueueCapacity()));
+            }
+        }
+
+        boolean isStopped() {
+            return stopped;
+        }
+
+        synchronized void stop(RequestException cause) {
+            if ((failure == null) && (cause != null)) {
+                failure = cause;
+            }
+
+            stopped = true;
+        }
+
+        // A worker died of something unexpected, don't leave the rest of the load waiting for it
+        synchronized void crash(RuntimeException cause) {
+            if (crash == null) {
+                crash = cause;
+            }
+
+            stopped = true;
+        }
+
+        // Wait for room in the queue, unless the load is stopped while waiting, in which case
+        // the batch will never be inserted and is closed
+        void put(int route, Content[] batch) throws InterruptedException {
+            BlockingQueue<Content[]> queue = queues.get(route);
+
+            while (!queue.offer(batch, OFFER_WAIT_MILLIS, TimeUnit.MILLISECONDS)) {
+                if (stopped) {
+                    close(batch);
+
+                    return;
+                }
+            }
+        }
+
+        // Close the content of batches that a stopped load will not insert
+        void discardQueued() {
+            for (BlockingQueue<Content[]> queue : queues) {
+                Content[] batch;
+
+                while ((batch = queue.poll()) != null) {
+                    close(batch);
+                }
+            }
+        }
+
+        private void close(Content[] batch) {
+            for (int i = 0; i < batch.length; i++) {
+                batch[i].close();
+            }
+        }
+
+        Content[] take(int route) throws InterruptedException {
+            BlockingQueue<Content[]> queue = queues.get(route);
+
+            while (!stopped) {
+                Content[] batch = queue.poll(OFFER_WAIT_MILLIS, TimeUnit.MILLISECONDS);
+
+                if (batch != null) {
+                    return batch;
+                }
+            }
+
+            return END_OF_STREAM;
+        }
+
+        Progress inserted(Content[] batch) {
+            documents.addAndGet(batch.length);
+            batches.incrementAndGet();
+
+            return progress();
+        }
+
+        Progress failed(Content[] batch) {
+            failedDocuments.addAndGet(batch.length);
+            failedBatches.incrementAndGet();
+
+            return progress();
+        }
+
+        Progress progress() {
+            return new Progress(documents.get(), batches.get(), failedDocuments.get(), failedBatches.get(),
+                    System.currentTimeMillis() - startMillis);
+        }
+    }
+
+    private class Worker implements Runnable {
+        private final Load load;
+        private final int route;
+        private final Session workerSession;
+        private final Logger logger;
+
+        Worker(Load load, int route, Session workerSession) {
+            this.load = load;
+            this.route = route;
+            this.workerSession = workerSession;
+            this.logger = session.getLogger();
+
+            workerSession.setLogger(logger);
+            workerSession.setDefaultRequestOptions(session.getDefaultRequestOptions());
+        }
+
+        public void run() {
+            try {
+                Content[] batch;
+
+                while ((batch = load.take(route)) != END_OF_STREAM) {
+                    insert(batch);
+                }
+            } catch (InterruptedException e) {
+                // the load has been abandoned
+            } catch (RuntimeException e) {
+                load.crash(e);
+
+                throw e;
+            } finally {
+                workerSession.close();
+            }
+        }
+
+        private void insert(Content[] batch) throws InterruptedException {
+            for (int retry = 0;; retry++) {
+                try {
+                    workerSession.insertContent(batch);
+                } catch (RequestException e) {
+                    if ((retry >= maxBatchRetries) || !isRetryable(e) || !rewind(batch, e)) {
+                        fail(batch, e);
+
+                        return;
+                    }
+
+                    if (logger.isLoggable(Level.FINE)) {
+                        logger.log(Level.FINE, "retrying batch of " + batch.length + " documents, retry "
+                                + (retry + 1), e);
+                    }
+
+                    if (listener != null) {
+                        listener.batchRetrying(batch, e, retry + 1);
+                    }
+
+                    Thread.sleep(retryDelay(retry));
+
+                    continue;
+                }
+
+                Progress progress = load.inserted(batch);
+
+                if (listener != null) {
+                    listener.batchInserted(batch, progress);
+                }
+
+                return;
+            }
+        }
+
+        // Doubles from the configured delay, until it reaches the maximum
+        private long retryDelay(int retry) {
+            long delay = batchRetryDelayMillis;
+
+            for (int i = 0; (i < retry) && (delay < MAX_BATCH_RETRY_DELAY_MILLIS); i++) {
+                delay = Math.min(delay * 2, MAX_BATCH_RETRY_DELAY_MILLIS);
+            }
+
+            return delay;
+        }
+
+        // The batch's content is not wrapped, so there is no telling whether content that
+        // cannot be rewound has been read; a batch holding any is not retried
+        private boolean rewind(Content[] batch, RequestException cause) {
+            for (int i = 0; i < batch.length; i++) {
+                if (!batch[i].isRewindable()) {
+                    if (logger.isLoggable(Level.FINE)) {
+                        logger.fine("cannot retry batch, content is not rewindable: " + batch[i].getUri());
+                    }
+
+                    return false;
+                }
+            }
+
+            try {
+                ContentInsertController.assertRestartable(new LinkedList<Content>(Arrays.asList(batch)),
+                        cause.getRequest());
+            } catch (RequestException e) {
+                if (logger.isLoggable(Level.FINE)) {
+                    logger.log(Level.FINE, "cannot retry batch", e);
+                }
+
+                return false;
+            }
+
+            return true;
+        }
+
+        private void fail(Content[] batch, RequestException cause) {
+            Progress progress = load.failed(batch);
+
+            logger.log(Level.WARNING, "batch of " + batch.length + " documents failed, first uri="
+                    + batch[0].getUri() + ": " + cause.getMessage());
+
+            for (int i = 0; i < batch.length; i++) {
+                batch[i].close();
+            }
+
+            if (listener != null) {
+                listener.batchFailed(batch, cause, progress);
+            }
+
+            if (stopOnFailure) {
+                load.stop(cause);
+            }
+        }
+    }
+
+    /**
+     * Decides which forest, if any, each document goes to, and which connection each batch is
+     * sent on. Documents are grouped by forest, one group per forest in order of forest name, and
+     * a last group for documents not placed by the loader.
+     */
+    private class Placer {
+        // Only the forests that take new documents. A forest's host is the one it is open on now,
+        // which differs from its configured host after a failover.
+        private static final String FORESTS_QUERY =
+                "declare namespace fs = 'http://marklogic.com/xdmp/status/forest'; "
+                + "for $id in xdmp:database-forests(xdmp:database()) "
+                + "let $status := xdmp:forest-status($id) "
+                + "where $status/fs:updates-allowed eq 'all' "
+                + "order by xdmp:forest-name($id) "
+                + "return (xdmp:forest-name($id), $id, xdmp:host-name($status/fs:host-id))";
+
+        private final BigInteger[] forestIds;
+        private final int[] forestRoutes;
+        private final List<ConnectionProvider> routes = new ArrayList<ConnectionProvider>();
+        // The providers made for this load, rather than borrowed from the session
+        private final List<ConnectionProvider> created = new ArrayList<ConnectionProvider>();
+        private long nextForest = 0;
+        private int nextRoute = 0;
+
+        Placer() throws RequestException {
+            ConnectionProvider provider = ((SessionImpl)session).getProvider();
+
+            if (placement == Placement.NONE) {
+                forestIds = new BigInteger[0];
+                forestRoutes = new int[0];
+                routes.add(provider);
+
+                return;
+            }
+
+            // name, id and current host of each forest, in order of name
+            String[] forests = session.submitRequest(session.newAdhocQuery(FORESTS_QUERY)).asStrings();
+            int count = forests.length / 3;
+
+            forestIds = new BigInteger[count];
+            forestRoutes = new int[count];
+
+            for (int i = 0; i < count; i++) {
+                forestIds[i] = new BigInteger(forests[(i * 3) + 1]);
+
+                ConnectionProvider forestProvider = routeToForestHosts ? providerFor(forests[(i * 3) + 2],
+                        provider) : provider;
+                int route = routes.indexOf(forestProvider);
+
+                if (route < 0) {
+                    route = routes.size();
+                    routes.add(forestProvider);
+                }
+
+                forestRoutes[i] = route;
+            }
+
+            if (routes.isEmpty()) {
+                routes.add(provider);
+            }
+        }
+
+        int groupCount() {
+            return forestIds.length + 1;
+        }
+
+        int group(Content content) {
+            ContentCreateOptions options = content.getCreateOptions();
+
+            if ((forestIds.length == 0) || ((options != null) && (options.getPlaceKeys() != null))) {
+                return forestIds.length;
+            }
+
+            if (placement == Placement.URI_HASH) {
+                return (content.getUri().hashCode() & Integer.MAX_VALUE) % forestIds.length;
+            }
+
+            return (int)(nextForest++ % forestIds.length);
+        }
+
+        Content place(Content content, int group) {
+            if (group == forestIds.length) {
+                return content;
+            }
+
+            if (content instanceof FileRegionContent) {
+                return new PlacedFileRegionContent((FileRegionContent)content, forestIds[group]);
+            }
+
+            return new PlacedContent(content, forestIds[group]);
+        }
+
+        // Batches of documents not placed by the loader are shared among the routes
+        int route(int group) {
+            if (group < forestIds.length) {
+                return forestRoutes[group];
+            }
+
+            return nextRoute++ % routes.size();
+        }
+
+        // Close the idle connections of the providers made for this load
+        void shutdown() {
+            for (ConnectionProvider provider : created) {
+                provider.shutdown(session.getLogger());
+            }
+        }
+
+        // The same port on another host, or the session's own connections if that is the same
+        // host or another can't be reached
+        private ConnectionProvider providerFor(String host, ConnectionProvider provider) {
+            if ((host == null) || !(provider instanceof SingleHostAddress)) {
+                return provider;
+            }
+
+            InetSocketAddress sessionAddress = ((SingleHostAddress)provider).getAddress();
+
+            if (sessionAddress == null) {
+                return provider;
+            }
+
+            InetSocketAddress address = new InetSocketAddress(host, sessionAddress.getPort());
+
+            if (address.isUnresolved()) {
+                session.getLogger().warning("cannot send batches to forest host " + host + ", using "
+                        + sessionAddress + " instead: not a usable net address");
+
+                return provider;
+            }
+
+            if (address.equals(sessionAddress)) {
+                return provider;
+            }
+
+            for (ConnectionProvider route : routes) {
+                if ((route instanceof SingleHostAddress) && address.equals(((SingleHostAddress)route).getAddress())) {
+                    return route;
+                }
+            }
+
+            ConnectionProvider hostProvider;
+
+            if (provider instanceof SSLSocketPoolProvider) {
+                try {
+                    hostProvider = new SSLSocketPoolProvider(address, new SecurityOptions(
+                            ((SSLSocketPoolProvider)provider).getSecurityOptions()));
+                } catch (GeneralSecurityException e) {
+                    session.getLogger().warning("cannot send batches to forest host " + host + ", using "
+                            + sessionAddress + " instead: " + e.getMessage());
+
+                    return provider;
+                }
+            } else if (provider instanceof SocketPoolProvider) {
+                hostProvider = new SocketPoolProvider(address);
+            } else {
+                return provider;
+            }
+
+            created.add(hostProvider);
+
+            return hostProvider;
+        }
+    }
+
+    /**
+     * A document with a forest added to its create options.
+     */
+    private static class PlacedContent implements Content {
+        private final Content content;
+        private final ContentCreateOptions options;
+
+        PlacedContent(Content content, BigInteger forestId) {
+            ContentCreateOptions original = content.getCreateOptions();
+
+            this.content = content;
+            this.options = (original == null) ? new ContentCreateOptions() : (ContentCreateOptions)original.clone();
+
+            options.setPlaceKeys(new BigInteger[] { forestId });
+        }
+
+        public String getUri() {
+            return content.getUri();
+        }
+
+        public InputStream openDataStream() throws IOException {
+            return content.openDataStream();
+        }
+
+        public ContentCreateOptions getCreateOptions() {
+            return options;
+        }
+
+        public boolean isRewindable() {
+            return content.isRewindable();
+        }
+
+        public void rewind() throws IOException {
+            content.rewind();
+        }
+
+        public long size() {
+            return content.size();
+        }
+
+        public void close() {
+            content.close();
+        }
+    }
+
+    /**
+     * A document with a forest added, that can still be sent straight from its file.
+     */
+    private static class PlacedFileRegionContent extends PlacedContent implements FileRegionContent {
+        private final FileRegionContent region;
+
+        PlacedFileRegionContent(FileRegionContent region, BigInteger forestId) {
+            super(region, forestId);
+
+            this.region = region;
+        }
+
+        public FileChannel openFileChannel() throws IOException {
+            return region.openFileChannel();
+        }
+
+        public long getFileOffset() {
+            return region.getFileOffset();
+        }
+    }
+
+    private static boolean isRetryable(RequestException e) {
+        if (e instanceof ServerConnectionException) {
+            return true;
+        }
+
+        return (e instanceof QueryException) && ((QueryException)e).isRetryable();
+    }
+}
@@ -27,7 +27,9 @@ import java.io.RandomAccessFile;
 import java.io.UnsupportedEncodingException;
 import java.net.URI;
 import java.net.URL;
+import java.nio.ByteBuffer;
 import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 
 import javax.xml.transform.OutputKeys;
 import javax.xml.transform.Result;
@@ -42,6 +44,8 @@ import org.w3c.dom.Document;
 import org.w3c.dom.Node;
 
 import com.fasterxml.jackson.databind.JsonNode;
+import com.marklogic.io.ByteBufferInputStream;
+import com.marklogic.xcc.impl.FileRegionContent;
 import com.marklogic.xcc.types.XdmNode;
 
 // Need an example of a user-implementation of the {@link Content}
@@ -176,6 +180,53 @@ public class ContentFactory {
         return new FileContent(uri, documentFile, createOptions);
     }
 
+    /**
+     * <p>
+     * Create a new {@link Content} object from a File object, by mapping the file into memory.
+     * The mapped bytes are written to the connection as they are, so the data is never copied
+     * into the Java heap. Mapping suits files that are sent more than once, or that are already
+     * in the operating system's cache. A file too big to map in one piece, more than 2GB, is read
+     * as {@link #newContent(String, File, ContentCreateOptions)} would read it.
+     * </p>
+     * <p>
+     * The file is mapped when this method is called, and stays mapped until the {@link Content}
+     * is garbage collected. It should not be changed in the meantime.
+     * </p>
+     * 
+     * @param uri
+     *            The URI (name) with which the document will be inserted into the content store. If
+     *            the URI already exists in the store, it will be replaced with the new content.
+     * @param documentFile
+     *            A File object whose content will be mapped. If the createOptions argument selects
+     *            {@link DocumentFormat#BINARY}, the content of the file will be transfered as an
+     *            opaque blob. Otherwise, the file is assumed to be UTF-8 encoded text.
+     * @param createOptions
+     *            Creation meta-information to be applied when the content is inserted into the
+     *            contentbase. These options control the document format (json, xml, text, binary) and
+     *            access permissions.
+     * @return A {@link Content} object suitable for passing to
+     *         {@link Session#insertContent(Content)}
+     * @throws java.io.IOException
+     *             If the file cannot be opened or mapped.
+     */
+    public static Content newMappedContent(String uri, File documentFile, ContentCreateOptions createOptions)
+            throws IOException {
+        if (documentFile.length() > Integer.MAX_VALUE) {
+            return newContent(uri, documentFile, createOptions);
+        }
+
+        RandomAccessFile raFile = new RandomAccessFile(documentFile, "r");
+
+        try {
+            FileChannel channel = raFile.getChannel();
+
+            return new ByteBufferContent(uri, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()),
+                    createOptions);
+        } finally {
+            raFile.close();
+        }
+    }
+
     /**
      * Create a new {@link Content} object from a RandomAccessFile object.
      * 
@@ -372,6 +423,29 @@ public class ContentFactory {
         return new ByteArrayContent(uri, documentBytes, offset, length, createOptions);
     }
 
+    /**
+     * Create a new {@link Content} object from the remaining bytes of a {@link ByteBuffer}, which
+     * may be a direct buffer. The bytes are written to the connection from the buffer itself, not
+     * copied, each time the content is sent, so the content is rewindable. The buffer's position
+     * and limit are not changed, but its bytes should not be changed until the content has been
+     * inserted.
+     * 
+     * @param uri
+     *            The URI (name) with which the document will be inserted into the content store. If
+     *            the URI already exists in the store, it will be replaced with the new content.
+     * @param documentBuffer
+     *            A buffer holding the content, from its position to its limit.
+     * @param createOptions
+     *            Creation meta-information to be applied when the content is inserted into the
+     *            contentbase. These options control the document format (json, xml, text, binary) and
+     *            access permissions.
+     * @return A {@link Content} object suitable for passing to
+     *         {@link Session#insertContent(Content)}
+     */
+    public static Content newContent(String uri, ByteBuffer documentBuffer, ContentCreateOptions createOptions) {
+        return new ByteBufferContent(uri, documentBuffer, createOptions);
+    }
+
     // ---------------------------------------------------------------
 
     /**
@@ -535,7 +609,49 @@ public class ContentFactory {
         }
     }
 
-    private static class FileContent implements Content {
+    private static class ByteBufferContent implements Content {
+        private final String uri;
+        private final ByteBuffer buffer;
+        private final ContentCreateOptions options;
+
+        public ByteBufferContent(String uri, ByteBuffer buffer, ContentCreateOptions options) {
+            if ((uri == null) || (uri.length() == 0)) {
+                throw new IllegalArgumentException("URI may not be null or zero-length");
+            }
+            this.uri = uri;
+            this.buffer = buffer.slice();
+            this.options = options;
+        }
+
+        public String getUri() {
+            return (uri);
+        }
+
+        // The insert controller writes the stream's buffer directly rather than reading it
+        public InputStream openDataStream() {
+            return new ByteBufferInputStream(buffer);
+        }
+
+        public ContentCreateOptions getCreateOptions() {
+            return options;
+        }
+
+        public boolean isRewindable() {
+            return true;
+        }
+
+        public void rewind() {
+        }
+
+        public long size() {
+            return buffer.remaining();
+        }
+
+        public void close() {
+        }
+    }
+
+    private static class FileContent implements FileRegionContent {
         private final String uri;
         private final ContentCreateOptions options;
         private final File file;
@@ -560,6 +676,18 @@ public class ContentFactory {
             return activeStream;
         }
 
+        public FileChannel openFileChannel() throws FileNotFoundException {
+            FileInputStream stream = new FileInputStream(file);
+
+            activeStream = stream;
+
+            return stream.getChannel();
+        }
+
+        public long getFileOffset() {
+            return 0;
+        }
+
         public ContentCreateOptions getCreateOptions() {
             return options;
         }
@@ -589,7 +717,7 @@ public class ContentFactory {
         }
     }
 
-    private static class RandomAccessFileContent implements Content {
+    private static class RandomAccessFileContent implements FileRegionContent {
         private final String uri;
         private final ContentCreateOptions options;
         private final RandomAccessFile raFile;
@@ -617,6 +745,14 @@ public class ContentFactory {
             return Channels.newInputStream(raFile.getChannel());
         }
 
+        public FileChannel openFileChannel() {
+            return raFile.getChannel();
+        }
+
+        public long getFileOffset() {
+            return start;
+        }
+
         public ContentCreateOptions getCreateOptions() {
             return options;
         }
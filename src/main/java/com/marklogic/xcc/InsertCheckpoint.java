@@ -0,0 +1,298 @@
+/*
+ * Copyright 2003-2016 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.xcc;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.marklogic.xcc.exceptions.RequestException;
+import com.marklogic.xcc.impl.SessionImpl;
+
+/**
+ * <p>
+ * Inserts a large array of {@link Content} in a series of transactions, and remembers how far it
+ * has got, so that an insert that fails part way can carry on from the last commit instead of
+ * sending everything again.
+ * </p>
+ * <p>
+ * {@link Session#insertContent(Content[])} inserts its whole array in one transaction, and when
+ * it has to retry, it sends the whole array again. {@link #insertContent(Session, Content[])}
+ * instead passes the array to {@link Session#insertContent(Content[])} {@link #getInterval()}
+ * documents at a time. Each of those calls commits, and retries on its own as usual. After
+ * each commit the checkpoint records the number of documents committed so far, and the URI of
+ * the last of them. Calling {@link #insertContent(Session, Content[])} again with the same array
+ * skips the documents already committed.
+ * </p>
+ * <p>
+ * A checkpoint made with a {@link File} saves its state in the file after each commit, and
+ * reads it back when it is made, so a load can also be resumed after the client is restarted.
+ * The file is replaced, not rewritten, so it always holds a complete checkpoint.
+ * </p>
+ * <p>
+ * Because documents are committed as they go, the {@link Session} must be in
+ * {@link Session.TransactionMode#AUTO} or {@link Session.TransactionMode#UPDATE_AUTO_COMMIT}
+ * mode, with no transaction open. Documents that are retried must be rewindable, as for any
+ * insert.
+ * </p>
+ * <p>
+ * Usage:
+ * </p>
+ *
+ * <pre>
+ * InsertCheckpoint checkpoint = new InsertCheckpoint(500, new File(&quot;load.checkpoint&quot;));
+ *
+ * checkpoint.insertContent(session, contents);
+ * </pre>
+ */
+public class InsertCheckpoint {
+    private static final String COMMITTED_PROPERTY = "committed";
+    private static final String LAST_URI_PROPERTY = "lastUri";
+
+    private final int interval;
+    private final File file;
+    private int committed = 0;
+    private String lastUri = null;
+
+    /**
+     * Make a checkpoint that is only kept in memory.
+     *
+     * @param interval
+     *            The number of documents to insert in each transaction.
+     */
+    public InsertCheckpoint(int interval) {
+        if (interval < 1) {
+            throw new IllegalArgumentException("Interval must be at least one: " + interval);
+        }
+
+        this.interval = interval;
+        this.file = null;
+    }
+
+    /**
+     * Make a checkpoint that is saved in a file. If the file exists, the checkpoint starts from
+     * the state saved in it.
+     *
+     * @param interval
+     *            The number of documents to insert in each transaction.
+     * @param file
+     *            The file to save the checkpoint in.
+     * @throws IOException
+     *             If the file exists but cannot be read.
+     */
+    public InsertCheckpoint(int interval, File file) throws IOException {
+        if (interval < 1) {
+            throw new IllegalArgumentException("Interval must be at least one: " + interval);
+        }
+
+        this.interval = interval;
+        this.file = file;
+
+        if (file.exists()) {
+            load();
+        }
+    }
+
+    // ------------------------------------------------------------
+
+    public int getInterval() {
+        return interval;
+    }
+
+    /**
+     * @return The file the checkpoint is saved in, or null if it is only kept in memory.
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * @return The number of documents, from the start of the array, known to be committed.
+     */
+    public int getCommittedCount() {
+        return committed;
+    }
+
+    /**
+     * @return The URI of the last document known to be committed, or null if there is none.
+     */
+    public String getLastCommittedUri() {
+        return lastUri;
+    }
+
+    /**
+     * Forget the documents committed so far, so that the next insert starts at the beginning,
+     * and delete the file, if there is one.
+     *
+     * @throws IOException
+     *             If the file cannot be deleted.
+     */
+    public void reset() throws IOException {
+        committed = 0;
+        lastUri = null;
+
+        if ((file != null) && file.exists() && !file.delete()) {
+            throw new IOException("Cannot delete checkpoint file " + file);
+        }
+    }
+
+    // ------------------------------------------------------------
+
+    /**
+     * <p>
+     * Insert the documents not yet committed, {@link #getInterval()} at a time. Documents skipped
+     * because they were committed before are closed, as if they had been inserted now.
+     * </p>
+     * <p>
+     * The checkpoint is left recording every document as committed, so calling this again with
+     * the same documents does nothing. Use {@link #reset()} to insert them again.
+     * </p>
+     *
+     * @param session
+     *            The {@link Session} to insert with.
+     * @param contents
+     *            The same documents, in the same order, each time this checkpoint is used.
+     * @throws IllegalStateException
+     *             If the session has an explicit transaction, or is enlisted in an XA
+     *             transaction.
+     * @throws IllegalArgumentException
+     *             If the documents do not match the checkpoint: there are fewer of them than
+     *             have been committed, or the last committed document has a different URI.
+     * @throws RequestException
+     *             If a group of documents cannot be inserted. The documents committed before it
+     *             stay committed, and are skipped when this is called again.
+     * @throws IOException
+     *             If the checkpoint file cannot be written. The documents have been committed,
+     *             but the file may not say so.
+     */
+    public void insertContent(Session session, Content[] contents) throws RequestException, IOException {
+        ((SessionImpl)session).assertNoExplicitTransaction(
+                "Checkpointed inserts commit as they go, they cannot be made in an explicit transaction");
+
+        assertMatches(contents);
+
+        Logger logger = session.getLogger();
+
+        if ((committed > 0) && logger.isLoggable(Level.FINE)) {
+            logger.fine("resuming insert after " + committed + " committed documents, last uri=" + lastUri);
+        }
+
+        for (int i = 0; i < committed; i++) {
+            contents[i].close();
+        }
+
+        while (committed < contents.length) {
+            int end = Math.min(committed + interval, contents.length);
+
+            session.insertContent(Arrays.copyOfRange(contents, committed, end));
+
+            committed = end;
+            lastUri = contents[end - 1].getUri();
+
+            if (file != null) {
+                save();
+            }
+
+            if (logger.isLoggable(Level.FINE)) {
+                logger.fine("committed " + committed + " of " + contents.length + " documents");
+            }
+        }
+    }
+
+    // ------------------------------------------------------------
+
+    private void assertMatches(Content[] contents) {
+        if (committed == 0) {
+            return;
+        }
+
+        if (committed > contents.length) {
+            throw new IllegalArgumentException("Checkpoint has " + committed + " documents committed, but only "
+                    + contents.length + " were given");
+        }
+
+        String uri = contents[committed - 1].getUri();
+
+        if (!uri.equals(lastUri)) {
+            throw new IllegalArgumentException("Checkpoint does not match these documents, document " + committed
+                    + " is " + uri + ", not " + lastUri);
+        }
+    }
+
+    private void load() throws IOException {
+        Properties props = new Properties();
+        InputStream in = new FileInputStream(file);
+
+        try {
+            props.load(in);
+        } finally {
+            in.close();
+        }
+
+        try {
+            committed = Integer.parseInt(props.getProperty(COMMITTED_PROPERTY, "0"));
+        } catch (NumberFormatException e) {
+            throw new IOException("Malformed checkpoint file " + file + ": " + e.getMessage());
+        }
+
+        lastUri = props.getProperty(LAST_URI_PROPERTY);
+
+        if ((committed < 0) || ((committed > 0) && (lastUri == null))) {
+            throw new IOException("Malformed checkpoint file " + file);
+        }
+    }
+
+    // Written beside the file and moved over it, so a crash never leaves half a checkpoint
+    private void save() throws IOException {
+        Properties props = new Properties();
+
+        props.setProperty(COMMITTED_PROPERTY, Integer.toString(committed));
+        props.setProperty(LAST_URI_PROPERTY, lastUri);
+
+        File dir = file.getAbsoluteFile().getParentFile();
+        File tmp = File.createTempFile(file.getName(), ".tmp", dir);
+
+        try {
+            FileOutputStream out = new FileOutputStream(tmp);
+
+            try {
+                props.store(out, "XCC insert checkpoint");
+                out.flush();
+                out.getFD().sync();
+            } finally {
+                out.close();
+            }
+
+            try {
+                Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            tmp.delete();
+        }
+    }
+}
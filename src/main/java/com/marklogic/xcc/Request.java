@@ -15,6 +15,7 @@
  */
 package com.marklogic.xcc;
 
+import com.marklogic.xcc.exceptions.RequestException;
 import com.marklogic.xcc.types.ValueType;
 import com.marklogic.xcc.types.XName;
 import com.marklogic.xcc.types.XdmValue;
@@ -77,10 +78,50 @@ public interface Request {
     RequestOptions getEffectiveOptions();
 
     /**
+     * <p>
+     * Prepare this Request for repeated submission. The query text (or module URI) and the
+     * effective {@link RequestOptions} are encoded once, when the Request is next submitted, and
+     * that encoding is reused by every later submission. Only the external variables, the
+     * position range and the transaction state of the {@link Session} are encoded each time.
+     * This saves re-encoding a large query that is run many times with different variables.
+     * </p>
+     * <p>
+     * Calling {@link #setOptions(RequestOptions)} or
+     * {@link Session#setDefaultRequestOptions(RequestOptions)}, or changing the query text or
+     * module URI, causes the encoding to be redone on the next submission, and the Request stays
+     * prepared. However,
+     * changes made directly to a {@link RequestOptions} object already set on this Request or on
+     * the {@link Session} are not seen by a prepared Request. Call this method again to pick them
+     * up.
+     * </p>
+     */
+    void prepare();
+
+    /**
+     * Whether {@link #prepare()} has been called on this Request.
+     * 
+     * @return true if this Request is prepared.
+     */
+    boolean isPrepared();
+
+    /**
+     * <p>
      * Associate the given {@link com.marklogic.xcc.types.XdmVariable} with this Request. If another
      * variable with the same name is already set, it is replaced. When an invocation of
      * {@link Session#submitRequest(Request)} is made, all currently set variables are sent with the
      * request and defined as XQuery external variables when the query runs in the server.
+     * </p>
+     * <p>
+     * The value may be a {@link com.marklogic.xcc.types.XdmSequence}, as made by
+     * {@link ValueFactory#newSequence(XdmValue[])}, for an external variable declared with a
+     * sequence type such as <code>xs:string*</code>. External variables only carry single values,
+     * so a Request with a sequence variable is run by a generated query that passes the variables
+     * to <code>xdmp:eval</code>, <code>xdmp:javascript-eval</code> or <code>xdmp:invoke</code>. A
+     * sequence of items that all have the same <code>xs:</code> type, such as a list of URIs, is
+     * sent as a single JSON array. The Request then runs in a transaction of its own, so it cannot
+     * be submitted in an explicit transaction, and a {@link ModuleSpawn} cannot have sequence
+     * variables. Either throws an <code>IllegalStateException</code> when the Request is submitted.
+     * </p>
      * 
      * @param variable
      *            A {@link com.marklogic.xcc.types.XdmVariable} instance to be associated with this
@@ -88,9 +129,6 @@ public interface Request {
      *            {@link com.marklogic.xcc.types.XName}) is already bound, it will be replaced with
      *            this one. Note that {@link com.marklogic.xcc.types.XName} instances with the same
      *            namespace/local name values are considered to be equal.
-     * @throws com.marklogic.xcc.exceptions.UnimplementedFeatureException
-     *             If the variable is not a type that can be passed with the Request, 
-     *             e.g. XdmSequence is not a supported type for external variables.
      */
     void setVariable(XdmVariable variable);
 
@@ -283,6 +321,58 @@ public interface Request {
      */
     void clearVariables();
 
+    /**
+     * <p>
+     * Add the variables currently set on this Request to its batch, as one parameter set. The
+     * variables stay set, so the next set can be built by replacing only those that change. Call
+     * {@link #executeBatch()} to run this Request once for each parameter set in the batch.
+     * </p>
+     */
+    void addBatch();
+
+    /**
+     * Remove all the parameter sets added by {@link #addBatch()}.
+     */
+    void clearBatch();
+
+    /**
+     * The number of parameter sets added by {@link #addBatch()} since the batch was last executed
+     * or cleared.
+     * 
+     * @return The number of parameter sets in the batch.
+     */
+    int getBatchSize();
+
+    /**
+     * <p>
+     * Run this Request once for each parameter set in its batch, in a single round trip to the
+     * server, and clear the batch. The server evaluates the query, or invokes the module, once per
+     * parameter set, as <code>xdmp:eval</code> or <code>xdmp:invoke</code> would, so each
+     * evaluation is its own statement, the same as if it had been submitted on its own. If any of
+     * them fails, the whole batch fails with the server's exception.
+     * </p>
+     * <p>
+     * The results are cached. To bound the size of a request and its result, call this method
+     * every so many parameter sets rather than once at the end. The position range set on this
+     * Request, with {@link #setPosition(long)} and {@link #setCount(long)}, is applied to the
+     * result of each parameter set, as it would be if that set were submitted on its own.
+     * </p>
+     * <p>
+     * Because each evaluation commits on its own, a batch cannot be part of a multi-statement
+     * transaction. The {@link Session} must be in {@link Session.TransactionMode#AUTO} or
+     * {@link Session.TransactionMode#UPDATE_AUTO_COMMIT} mode, with no transaction open.
+     * </p>
+     * 
+     * @return One cached {@link ResultSequence} for each parameter set, in the order they were
+     *         added. A zero length array if the batch is empty.
+     * @throws RequestException
+     *             If there is a problem submitting the batch or running any of its parameter sets.
+     * @throws IllegalStateException
+     *             If this Request is a {@link ModuleSpawn}, which has no results to return, or the
+     *             {@link Session} has an explicit transaction.
+     */
+    ResultSequence[] executeBatch() throws RequestException;
+
     /**
      * Return an array (possibly zero length) of all the {@link XdmVariable} objects currently set
      * on this Request.
@@ -16,10 +16,13 @@
 package com.marklogic.xcc;
 
 import java.math.BigInteger;
+import java.util.HashMap;
 import java.util.Locale;
+import java.util.Map;
 import java.util.TimeZone;
 
 import com.marklogic.http.MultipartSplitter;
+import com.marklogic.xcc.spi.ItemDecoder;
 
 /**
  * <p>
@@ -37,6 +40,12 @@ public class RequestOptions {
     /** Default delay (in milliseconds) between automatic query retries (value: 100) */
     public static final int DEFAULT_AUTO_RETRY_DELAY_MILLIS = 100;
 
+    /**
+     * Default maximum number of bytes read to drain an unfinished streaming result on close, so
+     * that its connection can be reused (value: 1 MB)
+     */
+    public static final long DEFAULT_RESULT_DRAIN_LIMIT = 1024 * 1024;
+
     /**
      * The system property name (<code>xcc.request.retries.max</code>) which, if set, specifies the
      * default maximum number of automatic retries. If not set, the programatic default is used (
@@ -57,13 +66,19 @@ public class RequestOptions {
     private int requestTimeLimit = -1;
     private boolean cacheResult = true;
     private boolean defaultCacheResult = true;
+    private long cacheResultMemoryLimit = 0;
     private String requestName;
     private Locale locale = null;
     private TimeZone timeZone = null;
     private BigInteger effectivePointInTime = null;
     private int resultBufferSize = 0;
+    private int resultDecodeThreads = 0;
+    private int resultReadAheadSize = 0;
+    private long resultDrainLimit = 0;
+    private int insertWindowSize = 0;
     private String defaultXQueryVersion = null;
     private String queryLanguage = null;
+    private Map<String, ItemDecoder> itemDecoders = null;
 
     // stuff that's been left out of 3.1, but will be added later
 //	private boolean logResultWarnings = true;
@@ -98,6 +113,39 @@ public class RequestOptions {
         defaultCacheResult = false;
     }
 
+    /**
+     * The currently set memory limit for cached results.
+     * 
+     * @return The limit in bytes. Zero (the default) or less means no limit.
+     */
+    public long getCacheResultMemoryLimit() {
+        return cacheResultMemoryLimit;
+    }
+
+    /**
+     * <p>
+     * Set an approximate limit on the memory used to hold a cached result. Once the items read so
+     * far add up to more than this many bytes, as received from the server, the rest of the result
+     * is written undecoded to a temporary file. That file is mapped into memory and each of those
+     * items is decoded again whenever it is accessed, which means that
+     * {@link ResultSequence#resultItemAt(int)} returns an equal but new {@link ResultItem} object
+     * for such items each time it is called.
+     * </p>
+     * <p>
+     * {@link ResultSequence#size()}, {@link ResultSequence#rewind()} and random access behave as
+     * for any cached result. The temporary file is deleted when the {@link ResultSequence} is
+     * closed, so results read with a limit in effect should always be closed. The limit also
+     * applies to {@link ResultSequence#toCached()}.
+     * </p>
+     * 
+     * @param cacheResultMemoryLimit
+     *            The limit in bytes. Zero means use the value set on the {@link Session}, if any. A
+     *            negative value means no limit.
+     */
+    public void setCacheResultMemoryLimit(long cacheResultMemoryLimit) {
+        this.cacheResultMemoryLimit = cacheResultMemoryLimit;
+    }
+
     // -------------------------------------------------------
 
     /**
@@ -210,6 +258,151 @@ public class RequestOptions {
 
     // -------------------------------------------------------
 
+    /**
+     * The currently set number of threads used to decode a cached {@link ResultSequence}.
+     * 
+     * @return The currently set value. Zero (the default) or one means that the result is decoded
+     *         on the thread that submitted the request.
+     */
+    public int getResultDecodeThreads() {
+        return resultDecodeThreads;
+    }
+
+    /**
+     * <p>
+     * Set the maximum number of threads that decode the items of a cached result concurrently. When
+     * this is greater than one, the submitting thread only reads the raw result parts off the
+     * connection, and the parts are decoded into {@link ResultItem}s on a pool of worker threads
+     * shared by all requests, of at most one thread per available processor. The order of the
+     * items is preserved.
+     * </p>
+     * <p>
+     * This helps most with large results made up of many documents or nodes, where turning the
+     * result bytes into strings dominates the elapsed time. It holds up to one undecoded part per
+     * thread in memory in addition to the cached items, and has no effect when
+     * {@link #setCacheResult(boolean)} is false.
+     * </p>
+     * 
+     * @param resultDecodeThreads
+     *            The number of parts to decode concurrently. A value of zero or one decodes on the
+     *            submitting thread.
+     */
+    public void setResultDecodeThreads(int resultDecodeThreads) {
+        this.resultDecodeThreads = resultDecodeThreads;
+    }
+
+    // -------------------------------------------------------
+
+    /**
+     * The currently set read-ahead buffer size for streaming {@link ResultSequence}s.
+     * 
+     * @return The currently set size, in bytes. Zero (the default) or less means no read-ahead.
+     */
+    public int getResultReadAheadSize() {
+        return resultReadAheadSize;
+    }
+
+    /**
+     * <p>
+     * Set the size of the read-ahead buffer for a streaming (non-cached) result. When this is
+     * greater than zero, a background thread reads the response from the server into a buffer of
+     * this many bytes while the application is busy with the current item, rather than the
+     * connection only being read when {@link ResultSequence#next()} is called. This keeps the
+     * server sending while each item is being processed, which helps when processing an item
+     * takes about as long as transferring it.
+     * </p>
+     * <p>
+     * Items are still decoded on the calling thread, and the behavior of
+     * {@link ResultSequence#close()}, iterators and errors is unchanged. An I/O error seen by the
+     * background thread is reported when the application reaches the point in the result at which
+     * it happened. This setting has no effect when {@link #setCacheResult(boolean)} is true.
+     * </p>
+     * 
+     * @param resultReadAheadSize
+     *            The read-ahead buffer size in bytes. Zero means use the value set on the
+     *            {@link Session}, if any. A negative value turns read-ahead off.
+     */
+    public void setResultReadAheadSize(int resultReadAheadSize) {
+        this.resultReadAheadSize = resultReadAheadSize;
+    }
+
+    // -------------------------------------------------------
+
+    /**
+     * The currently set drain limit for streaming {@link ResultSequence}s.
+     * 
+     * @return The currently set limit, in bytes. Zero means the default,
+     *         {@link #DEFAULT_RESULT_DRAIN_LIMIT}. A negative value means no limit.
+     */
+    public long getResultDrainLimit() {
+        return resultDrainLimit;
+    }
+
+    /**
+     * <p>
+     * Set how much of the remaining response may be read when a streaming (non-cached) result is
+     * closed before all of its items have been read. The server sends the whole result
+     * regardless, so the connection can only be reused once the unread part has been read and
+     * discarded. Reading the rest of a very large result just to keep the connection is far more
+     * costly than opening a new one.
+     * </p>
+     * <p>
+     * When {@link ResultSequence#close()} is called on an unfinished streaming result, the number
+     * of remaining bytes is estimated from the response length, if the server sent one. If that
+     * estimate is over this limit, or if the end of the response is not reached within this many
+     * bytes, the connection is closed rather than returned to the pool, and the pool opens a new
+     * one when next needed. This setting has no effect when {@link #setCacheResult(boolean)} is
+     * true.
+     * </p>
+     * 
+     * @param resultDrainLimit
+     *            The limit in bytes. Zero means use the value set on the {@link Session}, if any,
+     *            otherwise {@link #DEFAULT_RESULT_DRAIN_LIMIT}. A negative value means always read
+     *            the whole response.
+     */
+    public void setResultDrainLimit(long resultDrainLimit) {
+        this.resultDrainLimit = resultDrainLimit;
+    }
+
+    // -------------------------------------------------------
+
+    /**
+     * The currently set insert window size.
+     * 
+     * @return The number of documents that may be sent ahead. Zero (the default) or less means
+     *         one.
+     */
+    public int getInsertWindowSize() {
+        return insertWindowSize;
+    }
+
+    /**
+     * <p>
+     * Set how many documents {@link Session#insertContent(Content[])} may send before it reads
+     * the server's response to the first of them. By default each document is sent only once the
+     * response to the one before it has been read, so every document costs a round trip. With a
+     * larger window the documents are sent one after another while the responses come back, and
+     * each response is still matched to its document, in order.
+     * </p>
+     * <p>
+     * Documents whose {@link ContentCreateOptions#getResolveEntities()} is true are sent on their
+     * own, after every earlier response has been read, because the server may ask for their
+     * entities before it responds. Errors are reported, or collected by
+     * {@link Session#insertContentCollectErrors(Content[])}, as they are with a window of one. If
+     * an error is thrown while responses are still outstanding, the connection is closed rather
+     * than returned to the pool.
+     * </p>
+     * 
+     * @param insertWindowSize
+     *            The number of documents that may be sent ahead. Zero means use the value set on
+     *            the {@link Session}, if any.
+     */
+    public void setInsertWindowSize(int insertWindowSize) {
+        this.insertWindowSize = insertWindowSize;
+    }
+
+    // -------------------------------------------------------
+
     /**
      * Get the read timeout value (in milliseconds) for this options object.
      * 
@@ -452,6 +645,49 @@ public class RequestOptions {
         this.requestTimeLimit = requestTimeLimit;
     }
 
+    /**
+     * Returns the {@link ItemDecoder} explicitly registered on this object for the given primitive
+     * type name, if any.
+     * 
+     * @param primitive
+     *            A primitive type name as sent by the server, such as "integer" or "element()".
+     * @return An {@link ItemDecoder} instance, or null if the built-in decoder applies.
+     */
+    public ItemDecoder getItemDecoder(String primitive) {
+        return (itemDecoders == null) ? null : itemDecoders.get(primitive);
+    }
+
+    /**
+     * <p>
+     * Register (or clear) an {@link ItemDecoder} to be used in place of the built-in decoder for
+     * result items of the given primitive type. Decoders may also be registered for primitives
+     * that XCC does not know about.
+     * </p>
+     * <p>
+     * Decoders set on a {@link Request} take priority over those set on its {@link Session}.
+     * </p>
+     * 
+     * @param primitive
+     *            A primitive type name as sent by the server, such as "map" or "dateTime".
+     * @param decoder
+     *            An {@link ItemDecoder}, or null to revert to the built-in decoder.
+     */
+    public void setItemDecoder(String primitive, ItemDecoder decoder) {
+        if (decoder == null) {
+            if (itemDecoders != null) {
+                itemDecoders.remove(primitive);
+            }
+
+            return;
+        }
+
+        if (itemDecoders == null) {
+            itemDecoders = new HashMap<String, ItemDecoder>();
+        }
+
+        itemDecoders.put(primitive, decoder);
+    }
+
     // -------------------------------------------------------------
 
 //	public void includeResultChannel (ResultChannelName channel)
@@ -516,9 +752,24 @@ public class RequestOptions {
             if (!other.defaultCacheResult) {
                 cacheResult = other.cacheResult;
             }
+            if (other.cacheResultMemoryLimit != 0) {
+                cacheResultMemoryLimit = other.cacheResultMemoryLimit;
+            }
             if (other.resultBufferSize != 0) {
                 resultBufferSize = other.resultBufferSize;
             }
+            if (other.resultDecodeThreads != 0) {
+                resultDecodeThreads = other.resultDecodeThreads;
+            }
+            if (other.resultReadAheadSize != 0) {
+                resultReadAheadSize = other.resultReadAheadSize;
+            }
+            if (other.resultDrainLimit != 0) {
+                resultDrainLimit = other.resultDrainLimit;
+            }
+            if (other.insertWindowSize != 0) {
+                insertWindowSize = other.insertWindowSize;
+            }
             if (other.defaultXQueryVersion != null) {
                 defaultXQueryVersion = other.defaultXQueryVersion;
             }
@@ -528,6 +779,12 @@ public class RequestOptions {
             if (other.queryLanguage != null) {
                 queryLanguage = other.queryLanguage;
             }
+            if ((other.itemDecoders != null) && (!other.itemDecoders.isEmpty())) {
+                if (itemDecoders == null) {
+                    itemDecoders = new HashMap<String, ItemDecoder>();
+                }
+                itemDecoders.putAll(other.itemDecoders);
+            }
 
 //			if ( ! other.defaultLogResultWarnings) {
 //				logResultWarnings = other.logResultWarnings;
@@ -254,6 +254,109 @@ public interface ResultSequence extends XdmSequence<ResultItem> {
      */
     ResultItem[] toResultItemArray();
 
+    /**
+     * <p>
+     * Read the values of the next items in this ResultSequence, which must all be xs:integer
+     * values, into an array of primitive longs. Values are decoded directly from the result data;
+     * no {@link ResultItem} or boxed objects are created for them. This is the efficient way to
+     * consume large numeric results, such as those of cts:values or math functions.
+     * </p>
+     * <p>
+     * Reading starts after the current item and stops when <code>length</code> values have been
+     * stored or the end of the sequence is reached. The cursor is left on the last item read, but
+     * for streaming ResultSequences there is no current {@link ResultItem} afterward.
+     * </p>
+     * <p>
+     * If an item that is not an xs:integer is encountered, the values before it are stored and an
+     * exception is thrown. The offending item becomes the current item, so it may be examined with
+     * {@link #current()}. Values too large for a long are truncated, as with
+     * {@link com.marklogic.xcc.types.XSInteger#asPrimitiveLong()}. Any {@link
+     * com.marklogic.xcc.spi.ItemDecoder}s set in the {@link RequestOptions} are not consulted.
+     * </p>
+     * 
+     * @param dst
+     *            The array into which values are stored.
+     * @param offset
+     *            The index in dst of the first value stored.
+     * @param length
+     *            The maximum number of values to store.
+     * @return The number of values stored, zero if the end of the sequence has been reached.
+     * @throws IllegalStateException
+     *             If this ResultSequence is closed, or if an item of another type is encountered.
+     * @throws com.marklogic.xcc.exceptions.StreamingResultException
+     *             If an error occurs reading a streaming ResultSequence.
+     */
+    int readLongs(long[] dst, int offset, int length);
+
+    /**
+     * Equivalent to <code>readLongs(dst, 0, dst.length)</code>.
+     * 
+     * @param dst
+     *            The array into which values are stored.
+     * @return The number of values stored, zero if the end of the sequence has been reached.
+     * @see #readLongs(long[], int, int)
+     */
+    int readLongs(long[] dst);
+
+    /**
+     * Read the values of the next items in this ResultSequence into an array of primitive doubles.
+     * The items may be xs:double, xs:float, xs:decimal or xs:integer values; decimals and integers
+     * are converted to the nearest double. Otherwise this method behaves as
+     * {@link #readLongs(long[], int, int)}.
+     * 
+     * @param dst
+     *            The array into which values are stored.
+     * @param offset
+     *            The index in dst of the first value stored.
+     * @param length
+     *            The maximum number of values to store.
+     * @return The number of values stored, zero if the end of the sequence has been reached.
+     * @throws IllegalStateException
+     *             If this ResultSequence is closed, or if a non-numeric item is encountered.
+     * @throws com.marklogic.xcc.exceptions.StreamingResultException
+     *             If an error occurs reading a streaming ResultSequence.
+     */
+    int readDoubles(double[] dst, int offset, int length);
+
+    /**
+     * Equivalent to <code>readDoubles(dst, 0, dst.length)</code>.
+     * 
+     * @param dst
+     *            The array into which values are stored.
+     * @return The number of values stored, zero if the end of the sequence has been reached.
+     * @see #readDoubles(double[], int, int)
+     */
+    int readDoubles(double[] dst);
+
+    /**
+     * Read the string values of the next items in this ResultSequence into an array, without
+     * creating {@link ResultItem}s for them. Items of any type other than binary() may be read.
+     * Otherwise this method behaves as {@link #readLongs(long[], int, int)}.
+     * 
+     * @param dst
+     *            The array into which values are stored.
+     * @param offset
+     *            The index in dst of the first value stored.
+     * @param length
+     *            The maximum number of values to store.
+     * @return The number of values stored, zero if the end of the sequence has been reached.
+     * @throws IllegalStateException
+     *             If this ResultSequence is closed, or if a binary() item is encountered.
+     * @throws com.marklogic.xcc.exceptions.StreamingResultException
+     *             If an error occurs reading a streaming ResultSequence.
+     */
+    int readStrings(String[] dst, int offset, int length);
+
+    /**
+     * Equivalent to <code>readStrings(dst, 0, dst.length)</code>.
+     * 
+     * @param dst
+     *            The array into which values are stored.
+     * @return The number of values stored, zero if the end of the sequence has been reached.
+     * @see #readStrings(String[], int, int)
+     */
+    int readStrings(String[] dst);
+
     /**
      * Return the {@link ResultSequence} for an alternate {@link ResultChannelName}. The
      * {@link ResultSequence} returned by {@link Session#submitRequest(Request)} is the sequence of
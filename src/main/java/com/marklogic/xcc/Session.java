@@ -247,6 +247,41 @@ public interface Session extends Closeable {
      */
     ResultSequence submitRequest(Request request) throws RequestException;
 
+    /**
+     * <p>
+     * Submit a {@link Request} and return its result a page at a time. The request is run once per
+     * page of pageSize items, using the position and count parameters (see
+     * {@link Request#setPosition(long)} and {@link Request#setCount(long)}), starting at the
+     * position set on the request. Each page is cached. While the application works through one
+     * page, the next is fetched in the background on a separate connection.
+     * </p>
+     * <p>
+     * All pages run at the same point-in-time, so together they form a consistent result: the one
+     * set with {@link RequestOptions#setEffectivePointInTime(java.math.BigInteger)}, or if none is
+     * set, the current server timestamp when this method is called. The request must therefore be
+     * a query, not an update. Pages are fetched outside of any transaction open on this Session.
+     * The Request is copied by this method, later changes to it have no effect on the returned
+     * {@link ResultSequence}.
+     * </p>
+     * <p>
+     * The returned {@link ResultSequence} behaves like a streaming one: it cannot be rewound, and
+     * {@link ResultSequence#size()} returns -1. It should be closed when no longer needed.
+     * </p>
+     * 
+     * @param request
+     *            A {@link Request} instance, either {@link ModuleInvoke} or {@link AdhocQuery}.
+     * @param pageSize
+     *            The number of items to fetch per request.
+     * @return A {@link ResultSequence} over the whole result, positioned before the first item.
+     * @throws IllegalStateException
+     *             If this Session has been closed.
+     * @throws IllegalArgumentException
+     *             If pageSize is less than one or the request is a {@link ModuleSpawn}.
+     * @throws RequestException
+     *             If there is a problem fetching the point-in-time or the first page.
+     */
+    ResultSequence submitPagedRequest(Request request, int pageSize) throws RequestException;
+
     /**
      * Create a new {@link AdhocQuery} object and initialize it with the given query string and
      * {@link RequestOptions} object.
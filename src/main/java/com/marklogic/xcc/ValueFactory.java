@@ -16,9 +16,11 @@
 package com.marklogic.xcc;
 
 import java.io.ByteArrayInputStream;
+import java.io.File;
 import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
 import java.util.List;
 import java.util.Locale;
 import java.util.TimeZone;
@@ -31,6 +33,7 @@ import org.w3c.dom.Text;
 
 import com.fasterxml.jackson.databind.node.DoubleNode;
 import com.fasterxml.jackson.databind.node.NumericNode;
+import com.marklogic.io.ByteSource;
 import com.marklogic.xcc.types.ArrayNode;
 import com.marklogic.xcc.types.AtomicType;
 import com.marklogic.xcc.types.BooleanNode;
@@ -675,7 +678,8 @@ public final class ValueFactory {
 
     /**
      * Factory method to construct an {@link XdmSequence} from an array of {@link XdmValue} objects.
-     * Note XdmSequence is not a supported type for external variables.
+     * A sequence may be used as the value of an external variable, see
+     * {@link Request#setVariable(XdmVariable)}.
      * @param values
      *            An array of {@link XdmValue} instances.
      * @return A new {@link XdmSequence} object.
@@ -684,6 +688,87 @@ public final class ValueFactory {
         return (new SequenceImpl(values));
     }
 
+    /**
+     * Factory method to construct an {@link XdmSequence} of items that all have the same type, for
+     * example a list of URIs as <code>xs:string</code> values. Each value is converted as by
+     * {@link #newValue(ValueType, Object)}.
+     * 
+     * @param itemType
+     *            The {@link ValueType} of every item.
+     * @param values
+     *            The values of the items, in order.
+     * @return A new {@link XdmSequence} object.
+     * @throws IllegalArgumentException
+     *             If a value is not consistent with the itemType.
+     */
+    public static XdmSequence<XdmItem> newSequence(ValueType itemType, Object[] values) {
+        XdmValue[] items = new XdmValue[values.length];
+
+        for (int i = 0; i < values.length; i++) {
+            items[i] = newValue(itemType, values[i]);
+        }
+
+        return newSequence(items);
+    }
+
+    /**
+     * <p>
+     * Factory method to construct a value that is read from its source only when it is needed.
+     * When used as an external variable, the value is URL-encoded into the request as it is read,
+     * so a large document or binary is never held in memory as a String. This differs from
+     * {@link #newValue(ValueType, Object)}, which buffers a stream the first time it is read.
+     * </p>
+     * <p>
+     * A {@link File}, {@link ByteBuffer} or byte array is read again each time the value is sent,
+     * so a request using it can be retried automatically, and its length can be sent ahead of
+     * the body. An {@link InputStream} can only be read once. A request that streams one is sent
+     * without a length, and it cannot be retried once the stream has been read.
+     * </p>
+     * 
+     * @param valueType
+     *            One of {@link ValueType#DOCUMENT}, {@link ValueType#ELEMENT},
+     *            {@link ValueType#TEXT} or {@link ValueType#BINARY}, for which the source is the
+     *            serialized value in UTF-8 or the raw bytes, or
+     *            {@link ValueType#XS_BASE64_BINARY}, for which the source is the raw bytes and is
+     *            Base64 encoded as it is read.
+     * @param source
+     *            An instance of {@link File}, {@link ByteBuffer}, byte[] or {@link InputStream}. The
+     *            position of a {@link ByteBuffer} is not changed.
+     * @return An instance of {@link XdmValue}.
+     * @throws IllegalArgumentException
+     *             If valueType or source is not one of the above.
+     */
+    public static XdmValue newStreamedValue(ValueType valueType, Object source) {
+        ByteSource byteSource = ByteSource.newSource(source);
+
+        if (byteSource == null) {
+            throw new IllegalArgumentException("File, ByteBuffer, byte[] or InputStream value required to construct "
+                    + valueType);
+        }
+
+        if (valueType == ValueType.DOCUMENT) {
+            return new DocumentImpl(byteSource);
+        }
+
+        if (valueType == ValueType.ELEMENT) {
+            return new ElementImpl(byteSource);
+        }
+
+        if (valueType == ValueType.TEXT) {
+            return new TextImpl(byteSource);
+        }
+
+        if (valueType == ValueType.BINARY) {
+            return new BinaryImpl(byteSource);
+        }
+
+        if (valueType == ValueType.XS_BASE64_BINARY) {
+            return new XsBase64BinaryImpl(byteSource);
+        }
+
+        throw new IllegalArgumentException("Streamed values are not supported for " + valueType);
+    }
+
     // ------------------------------------------------------------
 
     /**
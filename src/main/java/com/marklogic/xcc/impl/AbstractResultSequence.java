@@ -16,102 +16,43 @@
 package com.marklogic.xcc.impl;
 
 import java.io.IOException;
+import java.io.UnsupportedEncodingException;
 import java.net.URLDecoder;
-import java.util.HashSet;
-import java.util.Locale;
-import java.util.Set;
-import java.util.TimeZone;
 
 import com.marklogic.http.MultipartBuffer;
 import com.marklogic.xcc.RequestOptions;
 import com.marklogic.xcc.ResultItem;
 import com.marklogic.xcc.ResultSequence;
 import com.marklogic.xcc.Request;
+import com.marklogic.xcc.spi.ItemDecoder;
+import com.marklogic.xcc.types.XSDecimal;
+import com.marklogic.xcc.types.XSDouble;
+import com.marklogic.xcc.types.XSFloat;
+import com.marklogic.xcc.types.XSInteger;
+import com.marklogic.xcc.types.XdmBinary;
 import com.marklogic.xcc.types.XdmItem;
-import com.marklogic.xcc.types.XdmNode;
-import com.marklogic.xcc.types.impl.ArrayNodeImpl;
-import com.marklogic.xcc.types.impl.AttributeImpl;
-import com.marklogic.xcc.types.impl.BinaryImpl;
-import com.marklogic.xcc.types.impl.BooleanNodeImpl;
-import com.marklogic.xcc.types.impl.CommentImpl;
-import com.marklogic.xcc.types.impl.CtsBoxImpl;
-import com.marklogic.xcc.types.impl.CtsCircleImpl;
-import com.marklogic.xcc.types.impl.CtsPointImpl;
-import com.marklogic.xcc.types.impl.CtsPolygonImpl;
-import com.marklogic.xcc.types.impl.DocumentImpl;
-import com.marklogic.xcc.types.impl.ElementImpl;
-import com.marklogic.xcc.types.impl.JSArrayImpl;
-import com.marklogic.xcc.types.impl.JSObjectImpl;
-import com.marklogic.xcc.types.impl.NullNodeImpl;
-import com.marklogic.xcc.types.impl.NumberNodeImpl;
-import com.marklogic.xcc.types.impl.ObjectNodeImpl;
-import com.marklogic.xcc.types.impl.ProcessingInstructionImpl;
-import com.marklogic.xcc.types.impl.TextImpl;
-import com.marklogic.xcc.types.impl.XsAnyUriImpl;
-import com.marklogic.xcc.types.impl.XsBase64BinaryImpl;
-import com.marklogic.xcc.types.impl.XsBooleanImpl;
-import com.marklogic.xcc.types.impl.XsDateImpl;
-import com.marklogic.xcc.types.impl.XsDateTimeImpl;
-import com.marklogic.xcc.types.impl.XsDayTimeDurationImpl;
-import com.marklogic.xcc.types.impl.XsDecimalImpl;
 import com.marklogic.xcc.types.impl.XsDoubleImpl;
-import com.marklogic.xcc.types.impl.XsDurationImpl;
-import com.marklogic.xcc.types.impl.XsFloatImpl;
-import com.marklogic.xcc.types.impl.XsGDayImpl;
-import com.marklogic.xcc.types.impl.XsGMonthDayImpl;
-import com.marklogic.xcc.types.impl.XsGMonthImpl;
-import com.marklogic.xcc.types.impl.XsGYearImpl;
-import com.marklogic.xcc.types.impl.XsGYearMonthImpl;
-import com.marklogic.xcc.types.impl.XsHexBinaryImpl;
 import com.marklogic.xcc.types.impl.XsIntegerImpl;
-import com.marklogic.xcc.types.impl.XsQNameImpl;
-import com.marklogic.xcc.types.impl.XsStringImpl;
-import com.marklogic.xcc.types.impl.XsTimeImpl;
-import com.marklogic.xcc.types.impl.XsUntypedAtomicImpl;
-import com.marklogic.xcc.types.impl.XsYearMonthDurationImpl;
 import com.marklogic.xcc.impl.handlers.ServerErrorParser;
 import com.marklogic.xcc.exceptions.RequestException;
 
 public abstract class AbstractResultSequence implements ResultSequence {
-    protected static final Set<String> stringConstructedTypes = new HashSet<String>();
-
-    static {
-        stringConstructedTypes.add("string");
-        stringConstructedTypes.add("integer");
-        stringConstructedTypes.add("anyURI");
-        stringConstructedTypes.add("QName");
-        stringConstructedTypes.add("boolean");
-        stringConstructedTypes.add("decimal");
-        stringConstructedTypes.add("double");
-        stringConstructedTypes.add("float");
-        stringConstructedTypes.add("untypedAtomic");
-        stringConstructedTypes.add("anySimpleType");
-        stringConstructedTypes.add("date");
-        stringConstructedTypes.add("dateTime");
-        stringConstructedTypes.add("time");
-        stringConstructedTypes.add("gDay");
-        stringConstructedTypes.add("gMonth");
-        stringConstructedTypes.add("gMonthDay");
-        stringConstructedTypes.add("gYear");
-        stringConstructedTypes.add("gYearMonth");
-        stringConstructedTypes.add("duration");
-        stringConstructedTypes.add("dayTimeDuration");
-        stringConstructedTypes.add("yearMonthDuration");
-        stringConstructedTypes.add("base64Binary");
-        stringConstructedTypes.add("hexBinary");
-        stringConstructedTypes.add("box");
-        stringConstructedTypes.add("circle");
-        stringConstructedTypes.add("point");
-        stringConstructedTypes.add("polygon");
-        stringConstructedTypes.add("array");
-        stringConstructedTypes.add("map");
-        stringConstructedTypes.add("object");
-        stringConstructedTypes.add("jsfunction");
-    }
+    protected static final String SEQUENCE_CONTENT_TYPE = "application/vnd.marklogic.sequence";
 
     protected Request request;
     protected String sequencePart = null;
     protected int sequencePosition = 0;
+
+    /** Set by {@link #readPrimitives} when it stops at an item of a type it cannot store */
+    protected ResultItem bulkMismatch = null;
+    private byte[] bulkBuffer = null;
+    private final Latin1Chars bulkChars = new Latin1Chars();
+
+    // bounds of the compact sequence entry last scanned by nextSequenceEntry()
+    private int entryPrimitiveStart;
+    private int entryPrimitiveEnd;
+    private int entryBodyStart;
+    private int entryBodyEnd;
     
     protected AbstractResultSequence(Request request) {
         this.request = request;
@@ -125,84 +66,61 @@ public abstract class AbstractResultSequence implements ResultSequence {
 
     abstract public long getTotalBytesRead();
 
+    public int readLongs(long[] dst) {
+        return readLongs(dst, 0, dst.length);
+    }
+
+    public int readDoubles(double[] dst) {
+        return readDoubles(dst, 0, dst.length);
+    }
+
+    public int readStrings(String[] dst) {
+        return readStrings(dst, 0, dst.length);
+    }
+
     protected ResultItem instantiateResultItem(MultipartBuffer mbuf, int index, RequestOptions options)
             throws RequestException, IOException {
         String contentType = null;
         if (sequencePart == null) {
-            mbuf.next();
-            contentType = mbuf.getHeader("content-type");
-            if (contentType == null) {
-                throw new IllegalStateException("No content-type header in part");
-            }
-            if (contentType.equals("application/vnd.marklogic.sequence")) {
-                sequencePart = mbuf.getBodyAsString();
-                sequencePosition = 0;
-            }
+            contentType = nextPart(mbuf);
         }
+
+        return decodeResultItem(contentType, mbuf, index, options);
+    }
+
+    // Position mbuf on its next part.  If it's a compact sequence part, its body becomes sequencePart.
+    protected String nextPart(MultipartBuffer mbuf) throws IOException {
+        mbuf.next();
+        String contentType = mbuf.getHeader("content-type");
+        if (contentType == null) {
+            throw new IllegalStateException("No content-type header in part");
+        }
+        if (contentType.equals(SEQUENCE_CONTENT_TYPE)) {
+            sequencePart = mbuf.getBodyAsString();
+            sequencePosition = 0;
+        }
+        return contentType;
+    }
+
+    // Decode the item at the current position: the next entry of sequencePart, or else the current part
+    protected ResultItem decodeResultItem(String contentType, MultipartBuffer mbuf, int index, RequestOptions options)
+            throws RequestException, IOException {
         XdmItem item = null;
         if (sequencePart == null) {
             item = instantiateXdmItem(contentType, mbuf, options);
         } else {
-            TimeZone timezone = options.getTimeZone();
-            Locale locale = options.getLocale();
-
-            int i = sequencePosition; 
-            while (i < sequencePart.length() && 
-                   sequencePart.charAt(i) != ':') {
-                ++i;
-            }
-            if (sequencePart.length() == i) {
-                throw new IllegalStateException("Unexpected EOF: " + 
-                        sequencePart.substring(sequencePosition));
-            }
-            String primitive = sequencePart.substring(sequencePosition, i);
-            sequencePosition = i+1;
-            
-            String body;
-            
-            if (primitive.equals("string")||primitive.equals("untypedAtomic")) {
-                i = sequencePosition; 
-                while ((i < sequencePart.length()) && 
-                        (sequencePart.charAt(i) != ':')) {
-                    ++i;
-                }
-                if (sequencePart.length() == i) {
-                    throw new IllegalStateException("Unexpected EOF: " + 
-                            sequencePart.substring(sequencePosition));
-                }
-                int length = Integer.parseInt(
-                        sequencePart.substring(sequencePosition, i));
-                int offset = i + 1;
-                for (int cp = 0, count = 0; 
-                     count < length; 
-                     offset += Character.charCount(cp), count++) {
-                    cp = sequencePart.codePointAt(offset);
-                }
-                body = sequencePart.substring(i+1, offset); 
-                i = offset;
-            } else {
-                i = sequencePosition; 
-                while ((i < sequencePart.length()) && 
-                        (sequencePart.charAt(i) != '\n')) {
-                    ++i;
-                }
-                body = sequencePart.subSequence(sequencePosition, i).toString();
-            }
-            
-            if (i < sequencePart.length()) {
-                sequencePosition = i+1;
-            } else {
-                sequencePart = null;
-                sequencePosition = 0;
-            }
+            String part = nextSequenceEntry();
+            String primitive = part.substring(entryPrimitiveStart, entryPrimitiveEnd);
+            String body = part.substring(entryBodyStart, entryBodyEnd);
 
-            if (stringConstructedTypes.contains(primitive)) {
-                item = (instantiateTypeFromString(primitive, body, timezone, locale));
-            } else {
-                item = nodeFactory(contentType, primitive, body, options.getCacheResult());
-            }
+            item = decoderFor(primitive, options).decode(primitive, body, options);
         }
 
+        return newResultItem(item, mbuf, index);
+    }
+
+    // Wrap item, taking its document URI and node path from the headers of the part mbuf is on
+    protected ResultItem newResultItem(XdmItem item, MultipartBuffer mbuf, int index) throws IOException {
         String uri = mbuf.getHeader("x-uri");
         String path = mbuf.getHeader("x-path");
 
@@ -213,10 +131,85 @@ public abstract class AbstractResultSequence implements ResultSequence {
         return new ResultItemImpl(item, index, uri, path);
     }
 
-    private XdmItem instantiateXdmItem(String contentType, MultipartBuffer mbuf, RequestOptions options) throws RequestException, IOException {
-        TimeZone timezone = options.getTimeZone();
-        Locale locale = options.getLocale();
+    /**
+     * Scan the entry of the compact sequence part at sequencePosition, setting the entry bounds,
+     * and step past it.  Returns the sequence part the bounds refer to, since sequencePart is
+     * cleared when the last entry is consumed.
+     */
+    private String nextSequenceEntry() {
+        String part = sequencePart;
+        int i = sequencePosition; 
+        while (i < part.length() && 
+               part.charAt(i) != ':') {
+            ++i;
+        }
+        if (part.length() == i) {
+            throw new IllegalStateException("Unexpected EOF: " + 
+                    part.substring(sequencePosition));
+        }
+        entryPrimitiveStart = sequencePosition;
+        entryPrimitiveEnd = i;
+        sequencePosition = i+1;
+        
+        if (entryPrimitiveIs(part, "string") || entryPrimitiveIs(part, "untypedAtomic")) {
+            i = sequencePosition; 
+            while ((i < part.length()) && 
+                    (part.charAt(i) != ':')) {
+                ++i;
+            }
+            if (part.length() == i) {
+                throw new IllegalStateException("Unexpected EOF: " + 
+                        part.substring(sequencePosition));
+            }
+            int length = Integer.parseInt(
+                    part.substring(sequencePosition, i));
+            int offset = i + 1;
+            for (int cp = 0, count = 0; 
+                 count < length; 
+                 offset += Character.charCount(cp), count++) {
+                cp = part.codePointAt(offset);
+            }
+            entryBodyStart = i + 1;
+            entryBodyEnd = offset;
+            i = offset;
+        } else {
+            i = sequencePosition; 
+            while ((i < part.length()) && 
+                    (part.charAt(i) != '\n')) {
+                ++i;
+            }
+            entryBodyStart = sequencePosition;
+            entryBodyEnd = i;
+        }
+        
+        if (i < part.length()) {
+            sequencePosition = i+1;
+        } else {
+            sequencePart = null;
+            sequencePosition = 0;
+        }
+
+        return part;
+    }
+
+    /**
+     * Step past the next entry of the compact sequence part.
+     * 
+     * @return The primitive type name and the body of the entry.
+     */
+    protected String[] nextSequenceEntryText() {
+        String part = nextSequenceEntry();
+
+        return new String[] { part.substring(entryPrimitiveStart, entryPrimitiveEnd),
+                part.substring(entryBodyStart, entryBodyEnd) };
+    }
+
+    private boolean entryPrimitiveIs(String part, String primitive) {
+        return ((entryPrimitiveEnd - entryPrimitiveStart) == primitive.length())
+                && part.startsWith(primitive, entryPrimitiveStart);
+    }
 
+    protected XdmItem instantiateXdmItem(String contentType, MultipartBuffer mbuf, RequestOptions options) throws RequestException, IOException {
         String error = mbuf.getHeader("x-error");
         if(error != null && error.equals("true")) {
             RequestException ex = ServerErrorParser.makeException(request, mbuf.getBodyAsString());
@@ -230,179 +223,248 @@ public abstract class AbstractResultSequence implements ResultSequence {
             throw new IllegalStateException("Result item has no x-primitive header value");
         }
 
-        if (stringConstructedTypes.contains(primitive)) {
-            return (instantiateTypeFromString(primitive, mbuf.getBodyAsString(), timezone, locale));
+        return decoderFor(primitive, options).decode(primitive, mbuf, options);
+    }
+
+    protected ItemDecoder decoderFor(String primitive, RequestOptions options) throws IOException {
+        ItemDecoder decoder = BuiltinItemDecoder.forPrimitive(primitive, options);
+
+        if (decoder == null) {
+            throw new IOException("Nodes of type '" + primitive + "' are not supported in XCC result sequences");
         }
 
-        return nodeFactory(contentType, primitive, mbuf, options.getCacheResult());
+        return decoder;
     }
 
-    private XdmNode nodeFactory(String contentType, String type, String body, boolean cache) throws IOException {
-        if (type.equals("text()")) {
-            return (new TextImpl(body));
-        }
-        else if (type.equals("node()")) {
-            return new ElementImpl(body);
-        }
-        else {
-            throw new IOException("Nodes of type '" + type + "' are not supported in XCC result sequences");
+    // ----------------------------------------------------------------
+    // Bulk extraction, straight from the part bytes without building ResultItems
+
+    protected static final int BULK_LONGS = 0;
+    protected static final int BULK_DOUBLES = 1;
+    protected static final int BULK_STRINGS = 2;
+
+    /**
+     * Store the values of up to length items into dst, which is a long[], double[] or String[]
+     * according to kind. Reading stops early at the end of the sequence, or at an item that cannot
+     * be stored as kind. In the latter case that item is decoded normally into
+     * {@link #bulkMismatch}.
+     * 
+     * @return The number of values stored.
+     */
+    protected int readPrimitives(MultipartBuffer mbuf, RequestOptions options, int kind, Object dst, int offset,
+            int length, int index) throws RequestException, IOException {
+        bulkMismatch = null;
+
+        int count = 0;
+
+        while ((count < length) && ((sequencePart != null) || mbuf.hasNext())) {
+            if (sequencePart == null) {
+                String contentType = nextPart(mbuf);
+
+                if (sequencePart == null) {
+                    String primitive = mbuf.getHeader("x-primitive");
+
+                    if ("true".equals(mbuf.getHeader("x-error")) || !bulkAccepts(kind, primitive)) {
+                        bulkMismatch = decodeResultItem(contentType, mbuf, index + count, options);
+                        break;
+                    }
+
+                    storePartValue(kind, mbuf, dst, offset + count);
+                    count++;
+                    continue;
+                }
+            }
+
+            String savedPart = sequencePart;
+            int savedPosition = sequencePosition;
+            String part = nextSequenceEntry();
+
+            if (!bulkAccepts(kind, part, entryPrimitiveStart, entryPrimitiveEnd)) {
+                sequencePart = savedPart;
+                sequencePosition = savedPosition;
+                bulkMismatch = decodeResultItem(null, mbuf, index + count, options);
+                break;
+            }
+
+            storeEntryValue(kind, part, dst, offset + count);
+            count++;
         }
+
+        return count;
     }
-    
-    private XdmNode nodeFactory(String contentType, String type, MultipartBuffer mbuf, boolean cache) throws IOException {
-        if (cache) {
-            if (type.equals("text()"))
-                return new TextImpl(mbuf.getBodyAsString());
-            if (type.equals("binary()"))
-                return new BinaryImpl(mbuf.getBodyStream(), true);
-            if (type.equals("document-node()"))
-                return new DocumentImpl(mbuf.getBodyAsString());
-            if (type.equals("element()"))
-                return new ElementImpl(mbuf.getBodyAsString());
-            if (type.equals("attribute()"))
-                return new AttributeImpl(mbuf.getHeader("x-attr"), mbuf.getBodyAsString());
-            if (type.equals("processing-instruction()"))
-                return new ProcessingInstructionImpl(mbuf.getBodyAsString());
-            if (type.equals("comment()"))
-                return new CommentImpl(mbuf.getBodyAsString());
-            // reproduce pre-5.0 behavior for pre-5.0 server
-            if (type.equals("node()")) 
-                return new ElementImpl(mbuf.getBodyAsString());
-            if (type.equals("object-node()"))
-                return new ObjectNodeImpl(mbuf.getBodyAsString());
-            if (type.equals("array-node()"))
-                return new ArrayNodeImpl(mbuf.getBodyAsString());
-            if (type.equals("null-node()"))
-                return new NullNodeImpl(mbuf.getBodyAsString());
-            if (type.equals("boolean-node()"))
-                return new BooleanNodeImpl(mbuf.getBodyAsString());
-            if (type.equals("number-node()"))
-                return new NumberNodeImpl(mbuf.getBodyAsString());
-        } else {
-            if (type.equals("text()"))
-                return new TextImpl(mbuf.getBodyStream());
-            if (type.equals("binary()"))
-                return new BinaryImpl(mbuf.getBodyStream(), false);
-            if (type.equals("document-node()"))
-                return new DocumentImpl(mbuf.getBodyStream());
-            if (type.equals("element()"))
-                return new ElementImpl(mbuf.getBodyStream());
-            if (type.equals("attribute()"))
-                return new AttributeImpl(mbuf.getHeader("x-attr"), mbuf.getBodyStream());
-            if (type.equals("processing-instruction()"))
-                return new ProcessingInstructionImpl(mbuf.getBodyStream());
-            if (type.equals("comment()"))
-                return new CommentImpl(mbuf.getBodyStream());
-            // reproduce pre-5.0 behavior for pre-5.0 server
-            if (type.equals("node()")) 
-                return new ElementImpl(mbuf.getBodyStream());
-            if (type.equals("object-node()"))
-                return new ObjectNodeImpl(mbuf.getBodyStream());
-            if (type.equals("array-node()"))
-                return new ArrayNodeImpl(mbuf.getBodyStream());
-            if (type.equals("null-node()"))
-                return new NullNodeImpl(mbuf.getBodyStream());
-            if (type.equals("boolean-node()"))
-                return new BooleanNodeImpl(mbuf.getBodyStream());
-            if (type.equals("number-node()"))
-                return new NumberNodeImpl(mbuf.getBodyStream());
+
+    protected static void checkBulkBounds(int arrayLength, int offset, int length) {
+        if ((offset < 0) || (length < 0) || ((offset + length) > arrayLength)) {
+            throw new IndexOutOfBoundsException("offset or length error");
         }
+    }
+
+    protected static IllegalStateException bulkTypeMismatch(int kind, ResultItem item) {
+        String target = (kind == BULK_LONGS) ? "long" : ((kind == BULK_DOUBLES) ? "double" : "String");
 
-        throw new IOException("Nodes of type '" + type + "' are not supported in XCC result sequences");
+        return new IllegalStateException("Item " + item.getIndex() + " (" + item.getItemType()
+                + ") cannot be read as a " + target);
     }
 
-    private XdmItem instantiateTypeFromString(String typeName, String bodyString, TimeZone timezone, Locale locale)
-            throws IOException {
-        if (typeName.equals("string")) {
-            return (new XsStringImpl(bodyString));
-        }
-        if (typeName.equals("integer")) {
-            return (new XsIntegerImpl(bodyString));
-        }
-        if (typeName.equals("anyURI")) {
-            return (new XsAnyUriImpl(bodyString));
-        }
-        if (typeName.equals("QName")) {
-            return (new XsQNameImpl(bodyString));
-        }
-        if (typeName.equals("boolean")) {
-            return (new XsBooleanImpl(bodyString));
-        }
-        if (typeName.equals("decimal")) {
-            return (new XsDecimalImpl(bodyString));
-        }
-        if (typeName.equals("double")) {
-            return (new XsDoubleImpl(bodyString));
-        }
-        if (typeName.equals("float")) {
-            return (new XsFloatImpl(bodyString));
-        }
-        if (typeName.equals("array")) {
-            return new JSArrayImpl(bodyString);
-        }
-        if (typeName.equals("map") || 
-            typeName.equals("object") ||
-            typeName.equals("jsfunction")) {
-            return new JSObjectImpl(bodyString);
-        }
-        if (typeName.equals("base64Binary")) {
-            return (new XsBase64BinaryImpl(bodyString));
-        }
-        if (typeName.equals("hexBinary")) {
-            return (new XsHexBinaryImpl(bodyString));
-        }
-        if (typeName.equals("untypedAtomic")) {
-            return (new XsUntypedAtomicImpl(bodyString));
-        }
-        if (typeName.equals("anySimpleType")) {
-            return (new XsUntypedAtomicImpl(bodyString)); // note: treated as xs:untypedAtomic
-        }
-        if (typeName.equals("date")) {
-            return (new XsDateImpl(bodyString, timezone, locale));
-        }
-        if (typeName.equals("dateTime")) {
-            return (new XsDateTimeImpl(bodyString, timezone, locale));
-        }
-        if (typeName.equals("time")) {
-            return (new XsTimeImpl(bodyString, timezone, locale));
+    /**
+     * Store the values of up to length items into dst by stepping through the decoded items with
+     * {@link #hasNext()} and {@link #next()}. An item that cannot be stored as kind is left as the
+     * current item, and the mismatch is thrown.
+     * 
+     * @return The number of values stored.
+     */
+    protected int readItems(int kind, Object dst, int offset, int length) {
+        int count = 0;
+
+        while ((count < length) && hasNext()) {
+            ResultItem item = next();
+            XdmItem value = item.getItem();
+            int i = offset + count;
+
+            if (kind == BULK_LONGS) {
+                if (!(value instanceof XSInteger)) {
+                    throw bulkTypeMismatch(kind, item);
+                }
+
+                ((long[])dst)[i] = ((XSInteger)value).asPrimitiveLong();
+            } else if (kind == BULK_DOUBLES) {
+                if (value instanceof XSDouble) {
+                    ((double[])dst)[i] = ((XSDouble)value).asPrimitiveDouble();
+                } else if (value instanceof XSFloat) {
+                    ((double[])dst)[i] = ((XSFloat)value).asPrimitiveFloat();
+                } else if ((value instanceof XSInteger) || (value instanceof XSDecimal)) {
+                    ((double[])dst)[i] = Double.parseDouble(value.asString());
+                } else {
+                    throw bulkTypeMismatch(kind, item);
+                }
+            } else {
+                if (value instanceof XdmBinary) {
+                    throw bulkTypeMismatch(kind, item);
+                }
+
+                ((String[])dst)[i] = value.asString();
+            }
+
+            count++;
         }
-        if (typeName.equals("gDay")) {
-            return (new XsGDayImpl(bodyString, timezone, locale));
+
+        return count;
+    }
+
+    private static final String[] LONG_PRIMITIVES = { "integer" };
+    private static final String[] DOUBLE_PRIMITIVES = { "double", "float", "decimal", "integer" };
+
+    private static String[] bulkPrimitives(int kind) {
+        return (kind == BULK_LONGS) ? LONG_PRIMITIVES : DOUBLE_PRIMITIVES;
+    }
+
+    private static boolean bulkAccepts(int kind, String primitive) {
+        if (primitive == null) {
+            return false;
         }
-        if (typeName.equals("gMonth")) {
-            return (new XsGMonthImpl(bodyString, timezone, locale));
+
+        return bulkAccepts(kind, primitive, 0, primitive.length());
+    }
+
+    private static boolean bulkAccepts(int kind, String str, int start, int end) {
+        if (kind == BULK_STRINGS) {
+            return !str.startsWith("binary()", start);
         }
-        if (typeName.equals("gMonthDay")) {
-            return (new XsGMonthDayImpl(bodyString, timezone, locale));
+
+        String[] primitives = bulkPrimitives(kind);
+
+        for (int i = 0; i < primitives.length; i++) {
+            if (((end - start) == primitives[i].length()) && str.startsWith(primitives[i], start)) {
+                return true;
+            }
         }
-        if (typeName.equals("gYear")) {
-            return (new XsGYearImpl(bodyString, timezone, locale));
+
+        return false;
+    }
+
+    private void storeEntryValue(int kind, String part, Object dst, int i) {
+        switch (kind) {
+        case BULK_LONGS:
+            ((long[])dst)[i] = XsIntegerImpl.parseLong(part, entryBodyStart, entryBodyEnd);
+            break;
+        case BULK_DOUBLES:
+            ((double[])dst)[i] = XsDoubleImpl.parseDouble(part, entryBodyStart, entryBodyEnd);
+            break;
+        default:
+            ((String[])dst)[i] = part.substring(entryBodyStart, entryBodyEnd);
         }
-        if (typeName.equals("gYearMonth")) {
-            return (new XsGYearMonthImpl(bodyString, timezone, locale));
+    }
+
+    private void storePartValue(int kind, MultipartBuffer mbuf, Object dst, int i) throws IOException {
+        if (kind == BULK_STRINGS) {
+            ((String[])dst)[i] = mbuf.getBodyAsString();
+            return;
         }
-        if (typeName.equals("duration")) {
-            return (new XsDurationImpl(bodyString));
+
+        int len = readPartBytes(mbuf);
+
+        if (kind == BULK_LONGS) {
+            ((long[])dst)[i] = XsIntegerImpl.parseLong(bulkChars.set(bulkBuffer, len), 0, len);
+        } else {
+            ((double[])dst)[i] = XsDoubleImpl.parseDouble(bulkChars.set(bulkBuffer, len), 0, len);
         }
-        if (typeName.equals("dayTimeDuration")) {
-            return (new XsDayTimeDurationImpl(bodyString));
+    }
+
+    private int readPartBytes(MultipartBuffer mbuf) throws IOException {
+        if (bulkBuffer == null) {
+            bulkBuffer = new byte[64];
         }
-        if (typeName.equals("yearMonthDuration")) {
-            return (new XsYearMonthDurationImpl(bodyString));
+
+        int len = 0;
+        int rc;
+
+        while ((rc = mbuf.read(bulkBuffer, len, bulkBuffer.length - len)) > 0) {
+            len += rc;
+
+            if (len == bulkBuffer.length) {
+                byte[] bigger = new byte[bulkBuffer.length * 2];
+                System.arraycopy(bulkBuffer, 0, bigger, 0, len);
+                bulkBuffer = bigger;
+            }
         }
-        if (typeName.equals("box")) {
-            return (new CtsBoxImpl(bodyString));
+
+        return len;
+    }
+
+    /**
+     * The bytes of a part, read as Latin-1 characters, so the digits of a number can be parsed
+     * without making a String of them first. It is pointed at the bytes before each use.
+     */
+    private static class Latin1Chars implements CharSequence {
+        private byte[] bytes;
+        private int length;
+
+        Latin1Chars set(byte[] bytes, int length) {
+            this.bytes = bytes;
+            this.length = length;
+
+            return this;
         }
-        if (typeName.equals("circle")) {
-            return (new CtsCircleImpl(bodyString));
+
+        public int length() {
+            return length;
         }
-        if (typeName.equals("point")) {
-            return (new CtsPointImpl(bodyString));
+
+        public char charAt(int index) {
+            return (char)(bytes[index] & 0xff);
         }
-        if (typeName.equals("polygon")) {
-            return (new CtsPolygonImpl(bodyString));
+
+        public CharSequence subSequence(int start, int end) {
+            return toString().substring(start, end);
         }
 
-        throw new IOException("Unrecognized atomic item type: " + typeName);
+        @Override
+        public String toString() {
+            try {
+                return new String(bytes, 0, length, "ISO-8859-1");
+            } catch (UnsupportedEncodingException e) {
+                throw new IllegalStateException(e);
+            }
+        }
     }
 }
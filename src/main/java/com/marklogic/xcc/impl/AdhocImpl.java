@@ -15,6 +15,8 @@
  */
 package com.marklogic.xcc.impl;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.logging.Logger;
 
 import com.marklogic.io.IOHelper;
@@ -35,6 +37,8 @@ public class AdhocImpl extends RequestImpl implements AdhocQuery {
 
     public void setQuery(String query) {
         this.query = query;
+
+        invalidatePreparedEncoding();
     }
 
     public String getQuery() {
@@ -43,6 +47,11 @@ public class AdhocImpl extends RequestImpl implements AdhocQuery {
 
     // --------------------------------------------------
 
+    @Override
+    RequestImpl newInstance(Session session, RequestOptions options) {
+        return new AdhocImpl(session, query, options);
+    }
+
     @Override
     String requestVar() {
         String queryLanguage = getEffectiveOptions().getQueryLanguage();
@@ -52,13 +61,29 @@ public class AdhocImpl extends RequestImpl implements AdhocQuery {
         return "xquery";
     }
 
+    @Override
+    void appendBatchCall(StringBuffer sb, String targetExpr, String varsExpr, String optionsExpr) {
+        if ("javascript".equals(requestVar())) {
+            sb.append("xdmp:javascript-eval(");
+        } else {
+            sb.append("xdmp:eval(");
+        }
+
+        sb.append(targetExpr).append(", ").append(varsExpr).append(", ").append(optionsExpr).append(")");
+    }
+
+    @Override
+    String batchTarget() {
+        return query;
+    }
+
     @Override
     String serverPath() {
         return "/eval";
     }
 
     @Override
-    void urlEncodeXQueryString(StringBuffer sb, Logger logger) {
-        IOHelper.urlEncodeToStringBuffer(sb, query);
+    void urlEncodeXQueryString(OutputStream out, Logger logger) throws IOException {
+        IOHelper.urlEncodeToStream(out, query);
     }
 }
@@ -0,0 +1,334 @@
+/*
+ * Copyright 2003-2016 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.xcc.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.marklogic.xcc.RequestOptions;
+import com.marklogic.xcc.ResultItem;
+import com.marklogic.xcc.ResultSequence;
+import com.marklogic.xcc.ValueFactory;
+import com.marklogic.xcc.exceptions.RequestException;
+import com.marklogic.xcc.types.AtomicType;
+import com.marklogic.xcc.types.ValueType;
+import com.marklogic.xcc.types.XName;
+import com.marklogic.xcc.types.XSInteger;
+import com.marklogic.xcc.types.XdmItem;
+import com.marklogic.xcc.types.XdmSequence;
+import com.marklogic.xcc.types.XdmValue;
+import com.marklogic.xcc.types.XdmVariable;
+import com.marklogic.xcc.types.impl.StreamedValue;
+
+/**
+ * <p>
+ * Runs a request once for each of a batch of parameter sets, in one round trip. A driver query
+ * is generated that makes one call per parameter set, through <code>xdmp:eval</code>,
+ * <code>xdmp:javascript-eval</code> or <code>xdmp:invoke</code>, and returns the number of items
+ * each call returned followed by those items. The query text or module URI, and the value of each
+ * variable in each set, are sent as external variables of the driver, with the usual encoding.
+ * Only the variable names are written into the driver itself.
+ * </p>
+ * <p>
+ * The driver's result is cached and cut up into one {@link ResultSequence} per parameter set.
+ * </p>
+ * <p>
+ * The same driver runs a single request whose variables include sequences, which the external
+ * variable encoding only has room for one value of. Each sequence is rebuilt by the driver in the
+ * variable map it passes to the call. A sequence of items of one <code>xs:</code> atomic type,
+ * such as a list of URIs, is sent as a single JSON array of the items' lexical forms, and cast
+ * back to that type. Any other sequence is sent as one driver variable per item.
+ * </p>
+ */
+class BatchQuery {
+    static final String BATCH_NAMESPACE = "http://marklogic.com/xdmp/xcc/batch";
+
+    private final SessionImpl session;
+    private final RequestImpl request;
+    private final XdmVariable[][] sets;
+    // The driver's own variables, filled in as the driver query is written
+    private final List<XdmVariable> driverVars = new ArrayList<XdmVariable>();
+
+    BatchQuery(SessionImpl session, RequestImpl request, XdmVariable[][] sets) {
+        this.session = session;
+        this.request = request;
+        this.sets = sets;
+    }
+
+    // --------------------------------------------------------
+
+    ResultSequence[] submit() throws RequestException {
+        if (sets.length == 0) {
+            return new ResultSequence[0];
+        }
+
+        RequestOptions options = request.getEffectiveOptions();
+
+        options.setCacheResult(true);
+        options.setQueryLanguage("xquery");
+
+        AdhocImpl driver = newDriver(driverQuery(options, true), options);
+        ResultSequence rs = session.submitRequest(driver);
+
+        try {
+            return split(rs);
+        } finally {
+            rs.close();
+        }
+    }
+
+    /**
+     * Run the request once, with the only parameter set, and return its result as the request
+     * would have on its own, including its position range.
+     */
+    ResultSequence submitSingle() throws RequestException {
+        RequestOptions options = request.getEffectiveOptions();
+
+        options.setQueryLanguage("xquery");
+
+        AdhocImpl driver = newDriver(driverQuery(options, false), options);
+
+        driver.setPosition(request.getPosition());
+        driver.setCount(request.getCount());
+
+        return session.submitRequest(driver);
+    }
+
+    // --------------------------------------------------------
+
+    private AdhocImpl newDriver(String query, RequestOptions options) {
+        AdhocImpl driver = new AdhocImpl(session, query, options);
+
+        driver.setNewStringVariable(BATCH_NAMESPACE, "target", request.batchTarget());
+
+        for (XdmVariable var : driverVars) {
+            driver.setVariable(var);
+        }
+
+        return driver;
+    }
+
+    private String driverQuery(RequestOptions options, boolean counted) {
+        StringBuffer declarations = new StringBuffer();
+        StringBuffer calls = new StringBuffer();
+        String evalOptions = evalOptions(options);
+
+        driverVars.clear();
+
+        for (int i = 0; i < sets.length; i++) {
+            StringBuffer vars = new StringBuffer("map:new((");
+
+            for (int j = 0; j < sets[i].length; j++) {
+                XName name = sets[i][j].getName();
+                String ns = name.getNamespace();
+                String key = ((ns == null) || (ns.length() == 0)) ? name.getLocalname()
+                        : ("{" + ns + "}" + name.getLocalname());
+
+                if (j > 0) {
+                    vars.append(", ");
+                }
+
+                vars.append("map:entry(").append(stringLiteral(key)).append(", ")
+                        .append(valueExpression(declarations, "s" + i + "v" + j, sets[i][j].getValue()))
+                        .append(")");
+            }
+
+            vars.append("))");
+
+            calls.append((i == 0) ? "" : ",\n").append(counted ? "xccb:counted(" : "");
+            request.appendBatchCall(calls, "$xccb:target", vars.toString(), evalOptions);
+            calls.append(counted ? ")" : "");
+        }
+
+        StringBuffer sb = new StringBuffer();
+
+        sb.append("xquery version \"1.0-ml\";\n");
+        sb.append("declare namespace xccb = \"").append(BATCH_NAMESPACE).append("\";\n");
+        sb.append("declare variable $xccb:target as xs:string external;\n");
+        sb.append(declarations);
+
+        if (counted) {
+            sb.append("declare function xccb:counted($items as item()*) as item()* {\n");
+            String range = positionRange("$items");
+
+            if (range.equals("$items")) {
+                sb.append("  (fn:count($items), $items)\n");
+            } else {
+                sb.append("  let $range := ").append(range).append("\n");
+                sb.append("  return (fn:count($range), $range)\n");
+            }
+            sb.append("};\n");
+        }
+
+        sb.append(calls).append("\n");
+
+        return sb.toString();
+    }
+
+    // The request's position range, applied to the result of each parameter set in a batch as it
+    // would be to the result of the request on its own
+    private String positionRange(String items) {
+        long position = Math.max(request.getPosition(), 1);
+        long count = request.getCount();
+
+        if ((position == 1) && (count == Long.MAX_VALUE)) {
+            return items;
+        }
+
+        if (count == Long.MAX_VALUE) {
+            return "fn:subsequence(" + items + ", " + position + ")";
+        }
+
+        return "fn:subsequence(" + items + ", " + position + ", " + count + ")";
+    }
+
+    // Declare and bind the driver variables that carry a value, and return the expression that
+    // rebuilds it
+    private String valueExpression(StringBuffer declarations, String name, XdmValue value) {
+        if (!(value instanceof XdmSequence<?>)) {
+            return driverVariable(declarations, name, value);
+        }
+
+        XdmItem[] items = ((XdmSequence<?>)value).toArray();
+
+        if (items.length == 0) {
+            return "()";
+        }
+
+        ValueType listType = listType(items);
+
+        if (listType != null) {
+            String var = driverVariable(declarations, name, ValueFactory.newXSString(jsonArray(items)));
+
+            return "(for $xccb:item in json:array-values(xdmp:from-json-string(" + var + ")) return " + listType
+                    + "($xccb:item))";
+        }
+
+        StringBuffer sb = new StringBuffer("(");
+
+        for (int k = 0; k < items.length; k++) {
+            sb.append((k == 0) ? "" : ", ").append(driverVariable(declarations, name + "i" + k, items[k]));
+        }
+
+        return sb.append(")").toString();
+    }
+
+    private String driverVariable(StringBuffer declarations, String name, XdmValue value) {
+        declarations.append("declare variable $xccb:").append(name).append(" external;\n");
+        driverVars.add(ValueFactory.newVariable(new XName(BATCH_NAMESPACE, name), value));
+
+        return "$xccb:" + name;
+    }
+
+    // The type shared by every item, if it is an xs: type that can be cast from its lexical form
+    // and none of the items is streamed
+    private static ValueType listType(XdmItem[] items) {
+        ValueType type = items[0].getValueType();
+
+        if (!(type instanceof AtomicType) || !type.toString().startsWith("xs:") || (type == ValueType.XS_QNAME)) {
+            return null;
+        }
+
+        for (int k = 0; k < items.length; k++) {
+            if ((items[k].getValueType() != type)
+                    || ((items[k] instanceof StreamedValue) && (((StreamedValue)items[k]).getValueSource() != null))) {
+                return null;
+            }
+        }
+
+        return type;
+    }
+
+    // Only options that eval would not otherwise pick up from the driver's request
+    private String evalOptions(RequestOptions options) {
+        StringBuffer sb = new StringBuffer("<options xmlns=\"xdmp:eval\">");
+
+        if (options.getEffectivePointInTime() != null) {
+            sb.append("<timestamp>").append(options.getEffectivePointInTime().toString()).append("</timestamp>");
+        }
+
+        if (options.getDefaultXQueryVersion() != null) {
+            sb.append("<default-xquery-version>").append(escapeXml(options.getDefaultXQueryVersion()))
+                    .append("</default-xquery-version>");
+        }
+
+        sb.append("</options>");
+
+        return sb.toString();
+    }
+
+    private ResultSequence[] split(ResultSequence rs) throws RequestException {
+        ResultSequence[] results = new ResultSequence[sets.length];
+
+        for (int i = 0; i < sets.length; i++) {
+            if (!rs.hasNext() || !(rs.next().getItem() instanceof XSInteger)) {
+                throw new RequestException("Malformed batch result, no item count for parameter set " + i, request);
+            }
+
+            long count = ((XSInteger)rs.current().getItem()).asPrimitiveLong();
+            List<ResultItem> items = new ArrayList<ResultItem>();
+
+            for (int index = 0; index < count; index++) {
+                if (!rs.hasNext()) {
+                    throw new RequestException("Malformed batch result, too few items for parameter set " + i,
+                            request);
+                }
+
+                ResultItem item = rs.next();
+
+                items.add(new ResultItemImpl(item.getItem(), index, item.getDocumentURI(), item.getNodePath()));
+            }
+
+            results[i] = new CachedResultSequence(request, items, 0);
+        }
+
+        return results;
+    }
+
+    private static String jsonArray(XdmItem[] items) {
+        StringBuilder sb = new StringBuilder("[");
+
+        for (int k = 0; k < items.length; k++) {
+            String value = items[k].asString();
+
+            sb.append((k == 0) ? "\"" : ",\"");
+
+            for (int c = 0; c < value.length(); c++) {
+                char ch = value.charAt(c);
+
+                if ((ch == '"') || (ch == '\\')) {
+                    sb.append('\\').append(ch);
+                } else if (ch < 0x20) {
+                    sb.append(String.format("\\u%04x", (int)ch));
+                } else {
+                    sb.append(ch);
+                }
+            }
+
+            sb.append('"');
+        }
+
+        return sb.append("]").toString();
+    }
+
+    private static String stringLiteral(String value) {
+        return "\"" + escapeXml(value).replace("\"", "&quot;") + "\"";
+    }
+
+    private static String escapeXml(String value) {
+        return value.replace("&", "&amp;").replace("<", "&lt;");
+    }
+}
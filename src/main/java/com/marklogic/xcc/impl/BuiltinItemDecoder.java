@@ -0,0 +1,337 @@
+/*
+ * Copyright 2003-2016 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.xcc.impl;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.marklogic.http.MultipartBuffer;
+import com.marklogic.xcc.RequestOptions;
+import com.marklogic.xcc.spi.ItemDecoder;
+import com.marklogic.xcc.types.XdmItem;
+import com.marklogic.xcc.types.impl.ArrayNodeImpl;
+import com.marklogic.xcc.types.impl.AttributeImpl;
+import com.marklogic.xcc.types.impl.BinaryImpl;
+import com.marklogic.xcc.types.impl.BooleanNodeImpl;
+import com.marklogic.xcc.types.impl.CommentImpl;
+import com.marklogic.xcc.types.impl.CtsBoxImpl;
+import com.marklogic.xcc.types.impl.CtsCircleImpl;
+import com.marklogic.xcc.types.impl.CtsPointImpl;
+import com.marklogic.xcc.types.impl.CtsPolygonImpl;
+import com.marklogic.xcc.types.impl.DocumentImpl;
+import com.marklogic.xcc.types.impl.ElementImpl;
+import com.marklogic.xcc.types.impl.JSArrayImpl;
+import com.marklogic.xcc.types.impl.JSObjectImpl;
+import com.marklogic.xcc.types.impl.NullNodeImpl;
+import com.marklogic.xcc.types.impl.NumberNodeImpl;
+import com.marklogic.xcc.types.impl.ObjectNodeImpl;
+import com.marklogic.xcc.types.impl.ProcessingInstructionImpl;
+import com.marklogic.xcc.types.impl.TextImpl;
+import com.marklogic.xcc.types.impl.XsAnyUriImpl;
+import com.marklogic.xcc.types.impl.XsBase64BinaryImpl;
+import com.marklogic.xcc.types.impl.XsBooleanImpl;
+import com.marklogic.xcc.types.impl.XsDateImpl;
+import com.marklogic.xcc.types.impl.XsDateTimeImpl;
+import com.marklogic.xcc.types.impl.XsDayTimeDurationImpl;
+import com.marklogic.xcc.types.impl.XsDecimalImpl;
+import com.marklogic.xcc.types.impl.XsDoubleImpl;
+import com.marklogic.xcc.types.impl.XsDurationImpl;
+import com.marklogic.xcc.types.impl.XsFloatImpl;
+import com.marklogic.xcc.types.impl.XsGDayImpl;
+import com.marklogic.xcc.types.impl.XsGMonthDayImpl;
+import com.marklogic.xcc.types.impl.XsGMonthImpl;
+import com.marklogic.xcc.types.impl.XsGYearImpl;
+import com.marklogic.xcc.types.impl.XsGYearMonthImpl;
+import com.marklogic.xcc.types.impl.XsHexBinaryImpl;
+import com.marklogic.xcc.types.impl.XsIntegerImpl;
+import com.marklogic.xcc.types.impl.XsQNameImpl;
+import com.marklogic.xcc.types.impl.XsStringImpl;
+import com.marklogic.xcc.types.impl.XsTimeImpl;
+import com.marklogic.xcc.types.impl.XsUntypedAtomicImpl;
+import com.marklogic.xcc.types.impl.XsYearMonthDurationImpl;
+
+/**
+ * The decoders for every primitive XCC understands out of the box. Each instance handles one
+ * kind of item and is looked up by primitive name, so dispatch is a single hash probe per item.
+ * Atomic values are built from their lexical form without validation; the server sent them, so
+ * they are parsed only when a typed accessor is first called.
+ */
+final class BuiltinItemDecoder extends ItemDecoder {
+    private static final int STRING = 0;
+    private static final int INTEGER = 1;
+    private static final int ANY_URI = 2;
+    private static final int QNAME = 3;
+    private static final int BOOLEAN = 4;
+    private static final int DECIMAL = 5;
+    private static final int DOUBLE = 6;
+    private static final int FLOAT = 7;
+    private static final int UNTYPED_ATOMIC = 8;
+    private static final int DATE = 9;
+    private static final int DATE_TIME = 10;
+    private static final int TIME = 11;
+    private static final int GDAY = 12;
+    private static final int GMONTH = 13;
+    private static final int GMONTH_DAY = 14;
+    private static final int GYEAR = 15;
+    private static final int GYEAR_MONTH = 16;
+    private static final int DURATION = 17;
+    private static final int DAY_TIME_DURATION = 18;
+    private static final int YEAR_MONTH_DURATION = 19;
+    private static final int BASE64_BINARY = 20;
+    private static final int HEX_BINARY = 21;
+    private static final int BOX = 22;
+    private static final int CIRCLE = 23;
+    private static final int POINT = 24;
+    private static final int POLYGON = 25;
+    private static final int JS_ARRAY = 26;
+    private static final int JS_OBJECT = 27;
+
+    // nodes
+    private static final int TEXT = 100;
+    private static final int BINARY = 101;
+    private static final int DOCUMENT = 102;
+    private static final int ELEMENT = 103;
+    private static final int ATTRIBUTE = 104;
+    private static final int PROCESSING_INSTRUCTION = 105;
+    private static final int COMMENT = 106;
+    private static final int NODE = 107;
+    private static final int OBJECT_NODE = 108;
+    private static final int ARRAY_NODE = 109;
+    private static final int NULL_NODE = 110;
+    private static final int BOOLEAN_NODE = 111;
+    private static final int NUMBER_NODE = 112;
+
+    private static final Map<String, ItemDecoder> decoders = new HashMap<String, ItemDecoder>(64);
+
+    static {
+        register("string", STRING);
+        register("integer", INTEGER);
+        register("anyURI", ANY_URI);
+        register("QName", QNAME);
+        register("boolean", BOOLEAN);
+        register("decimal", DECIMAL);
+        register("double", DOUBLE);
+        register("float", FLOAT);
+        register("untypedAtomic", UNTYPED_ATOMIC);
+        register("anySimpleType", UNTYPED_ATOMIC); // note: treated as xs:untypedAtomic
+        register("date", DATE);
+        register("dateTime", DATE_TIME);
+        register("time", TIME);
+        register("gDay", GDAY);
+        register("gMonth", GMONTH);
+        register("gMonthDay", GMONTH_DAY);
+        register("gYear", GYEAR);
+        register("gYearMonth", GYEAR_MONTH);
+        register("duration", DURATION);
+        register("dayTimeDuration", DAY_TIME_DURATION);
+        register("yearMonthDuration", YEAR_MONTH_DURATION);
+        register("base64Binary", BASE64_BINARY);
+        register("hexBinary", HEX_BINARY);
+        register("box", BOX);
+        register("circle", CIRCLE);
+        register("point", POINT);
+        register("polygon", POLYGON);
+        register("array", JS_ARRAY);
+        register("map", JS_OBJECT);
+        register("object", JS_OBJECT);
+        register("jsfunction", JS_OBJECT);
+
+        register("text()", TEXT);
+        register("binary()", BINARY);
+        register("document-node()", DOCUMENT);
+        register("element()", ELEMENT);
+        register("attribute()", ATTRIBUTE);
+        register("processing-instruction()", PROCESSING_INSTRUCTION);
+        register("comment()", COMMENT);
+        // reproduce pre-5.0 behavior for pre-5.0 server
+        register("node()", NODE);
+        register("object-node()", OBJECT_NODE);
+        register("array-node()", ARRAY_NODE);
+        register("null-node()", NULL_NODE);
+        register("boolean-node()", BOOLEAN_NODE);
+        register("number-node()", NUMBER_NODE);
+    }
+
+    private static void register(String primitive, int kind) {
+        decoders.put(primitive, new BuiltinItemDecoder(kind));
+    }
+
+    /**
+     * Find the decoder for a primitive type name, giving precedence to any decoder registered on
+     * the options object.
+     * 
+     * @return The decoder, or null if the primitive is not known.
+     */
+    static ItemDecoder forPrimitive(String primitive, RequestOptions options) {
+        ItemDecoder decoder = options.getItemDecoder(primitive);
+
+        if (decoder != null) {
+            return decoder;
+        }
+
+        return decoders.get(primitive);
+    }
+
+    // ----------------------------------------------------------------
+
+    private final int kind;
+
+    private BuiltinItemDecoder(int kind) {
+        this.kind = kind;
+    }
+
+    @Override
+    public XdmItem decode(String primitive, String body, RequestOptions options) throws IOException {
+        switch (kind) {
+        case STRING:
+            return new XsStringImpl(body);
+        case INTEGER:
+            return new XsIntegerImpl(body, false);
+        case ANY_URI:
+            return new XsAnyUriImpl(body);
+        case QNAME:
+            return new XsQNameImpl(body);
+        case BOOLEAN:
+            return new XsBooleanImpl(body);
+        case DECIMAL:
+            return new XsDecimalImpl(body, false);
+        case DOUBLE:
+            return new XsDoubleImpl(body, false);
+        case FLOAT:
+            return new XsFloatImpl(body, false);
+        case UNTYPED_ATOMIC:
+            return new XsUntypedAtomicImpl(body);
+        case DATE:
+            return new XsDateImpl(body, options.getTimeZone(), options.getLocale(), false);
+        case DATE_TIME:
+            return new XsDateTimeImpl(body, options.getTimeZone(), options.getLocale(), false);
+        case TIME:
+            return new XsTimeImpl(body, options.getTimeZone(), options.getLocale(), false);
+        case GDAY:
+            return new XsGDayImpl(body, options.getTimeZone(), options.getLocale(), false);
+        case GMONTH:
+            return new XsGMonthImpl(body, options.getTimeZone(), options.getLocale(), false);
+        case GMONTH_DAY:
+            return new XsGMonthDayImpl(body, options.getTimeZone(), options.getLocale(), false);
+        case GYEAR:
+            return new XsGYearImpl(body, options.getTimeZone(), options.getLocale(), false);
+        case GYEAR_MONTH:
+            return new XsGYearMonthImpl(body, options.getTimeZone(), options.getLocale(), false);
+        case DURATION:
+            return new XsDurationImpl(body, false);
+        case DAY_TIME_DURATION:
+            return new XsDayTimeDurationImpl(body, false);
+        case YEAR_MONTH_DURATION:
+            return new XsYearMonthDurationImpl(body, false);
+        case BASE64_BINARY:
+            return new XsBase64BinaryImpl(body, false);
+        case HEX_BINARY:
+            return new XsHexBinaryImpl(body, false);
+        case BOX:
+            return new CtsBoxImpl(body);
+        case CIRCLE:
+            return new CtsCircleImpl(body);
+        case POINT:
+            return new CtsPointImpl(body);
+        case POLYGON:
+            return new CtsPolygonImpl(body);
+        case JS_ARRAY:
+            return new JSArrayImpl(body);
+        case JS_OBJECT:
+            return new JSObjectImpl(body);
+        // only these two node kinds may appear in a compact sequence
+        case TEXT:
+            return new TextImpl(body);
+        case NODE:
+            return new ElementImpl(body);
+        default:
+            throw new IOException("Nodes of type '" + primitive + "' are not supported in XCC result sequences");
+        }
+    }
+
+    @Override
+    public XdmItem decode(String primitive, MultipartBuffer part, RequestOptions options) throws IOException {
+        if (kind < TEXT) {
+            return decode(primitive, part.getBodyAsString(), options);
+        }
+
+        if (options.getCacheResult()) {
+            switch (kind) {
+            case TEXT:
+                return new TextImpl(part.getBodyAsString());
+            case BINARY:
+                return new BinaryImpl(part.getBodyStream(), true, part.getBodyLength());
+            case DOCUMENT:
+                return new DocumentImpl(part.getBodyAsString());
+            case ELEMENT:
+            case NODE:
+                return new ElementImpl(part.getBodyAsString());
+            case ATTRIBUTE:
+                return new AttributeImpl(part.getHeader("x-attr"), part.getBodyAsString());
+            case PROCESSING_INSTRUCTION:
+                return new ProcessingInstructionImpl(part.getBodyAsString());
+            case COMMENT:
+                return new CommentImpl(part.getBodyAsString());
+            case OBJECT_NODE:
+                return new ObjectNodeImpl(part.getBodyAsString());
+            case ARRAY_NODE:
+                return new ArrayNodeImpl(part.getBodyAsString());
+            case NULL_NODE:
+                return new NullNodeImpl(part.getBodyAsString());
+            case BOOLEAN_NODE:
+                return new BooleanNodeImpl(part.getBodyAsString());
+            case NUMBER_NODE:
+                return new NumberNodeImpl(part.getBodyAsString());
+            }
+        } else {
+            switch (kind) {
+            case TEXT:
+                return new TextImpl(part.getBodyStream());
+            case BINARY:
+                return new BinaryImpl(part.getBodyStream(), false, part.getBodyLength());
+            case DOCUMENT:
+                return new DocumentImpl(part.getBodyStream());
+            case ELEMENT:
+            case NODE:
+                return new ElementImpl(part.getBodyStream());
+            case ATTRIBUTE:
+                return new AttributeImpl(part.getHeader("x-attr"), part.getBodyStream());
+            case PROCESSING_INSTRUCTION:
+                return new ProcessingInstructionImpl(part.getBodyStream());
+            case COMMENT:
+                return new CommentImpl(part.getBodyStream());
+            case OBJECT_NODE:
+                return new ObjectNodeImpl(part.getBodyStream());
+            case ARRAY_NODE:
+                return new ArrayNodeImpl(part.getBodyStream());
+            case NULL_NODE:
+                return new NullNodeImpl(part.getBodyStream());
+            case BOOLEAN_NODE:
+                return new BooleanNodeImpl(part.getBodyStream());
+            case NUMBER_NODE:
+                return new NumberNodeImpl(part.getBodyStream());
+            }
+        }
+
+        throw new IOException("Nodes of type '" + primitive + "' are not supported in XCC result sequences");
+    }
+
+    @Override
+    public String toString() {
+        return "BuiltinItemDecoder: kind=" + kind;
+    }
+}
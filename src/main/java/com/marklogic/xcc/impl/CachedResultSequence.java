@@ -16,9 +16,22 @@
 package com.marklogic.xcc.impl;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.AbstractList;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.marklogic.http.MultipartBuffer;
 import com.marklogic.xcc.RequestOptions;
@@ -30,6 +43,7 @@ import com.marklogic.xcc.types.ValueType;
 import com.marklogic.xcc.types.XdmItem;
 import com.marklogic.xcc.types.impl.SequenceImpl;
 import com.marklogic.xcc.exceptions.RequestException;
+import com.marklogic.xcc.exceptions.StreamingResultException;
 
 public class CachedResultSequence extends AbstractResultSequence {
     private final ArrayList<ResultItem> items = new ArrayList<ResultItem>();
@@ -37,6 +51,10 @@ public class CachedResultSequence extends AbstractResultSequence {
     private int cursor = -1;
     private final ResultSequence primary;
     private long totalBytesRead;
+    private final RequestOptions options;
+    private ResultSpillFile spill = null;
+    private int spilledIndex = -1;
+    private ResultItem spilledItem = null;
     
     // ------------------------------------------------------
 
@@ -44,25 +62,43 @@ public class CachedResultSequence extends AbstractResultSequence {
         // empty sequence constructor used to create empty ResultSequences
         super(((AbstractResultSequence)primary).getRequest());
         this.primary = primary;
+        this.options = null;
     }
 
     public CachedResultSequence(Request request, MultipartBuffer multipartBuffer, RequestOptions options) throws RequestException, IOException {
         super(request);
         primary = this;
+        this.options = options;
 
-        int index = 0;
+        if (options.getResultDecodeThreads() > 1) {
+            cacheInParallel(multipartBuffer, options);
+        } else {
+            int index = 0;
 
-        while ((sequencePart != null) || multipartBuffer.hasNext()) {
-            ResultItem item = instantiateResultItem(multipartBuffer, index, options);
+            while (((sequencePart != null) || multipartBuffer.hasNext()) && !overMemoryLimit(multipartBuffer)) {
+                ResultItem item = instantiateResultItem(multipartBuffer, index, options);
 
-            item.cache();
-            items.add(item);
-            index++;
+                item.cache();
+                items.add(item);
+                index++;
+            }
+        }
+
+        if ((sequencePart != null) || multipartBuffer.hasNext()) {
+            spillRemaining(multipartBuffer, options);
         }
         
         totalBytesRead = multipartBuffer.getTotalBytesRead();
     }
 
+    CachedResultSequence(Request request, List<ResultItem> items, long totalBytesRead) {
+        super(request);
+        primary = this;
+        this.options = null;
+        this.items.addAll(items);
+        this.totalBytesRead = totalBytesRead;
+    }
+
     public long getTotalBytesRead() {
         return totalBytesRead;
     }
@@ -70,7 +106,7 @@ public class CachedResultSequence extends AbstractResultSequence {
     // ------------------------------------------------------
 
     public int size() {
-        return items.size();
+        return (spill == null) ? items.size() : (items.size() + spill.size());
     }
 
     public boolean isCached() {
@@ -80,6 +116,14 @@ public class CachedResultSequence extends AbstractResultSequence {
     public void close() {
         items.clear(); // let them be GC'ed
         cursor = -1;
+
+        if (spill != null) {
+            spill.delete();
+            spill = null;
+            spilledItem = null;
+            spilledIndex = -1;
+        }
+
         closed = true;
     }
 
@@ -109,7 +153,7 @@ public class CachedResultSequence extends AbstractResultSequence {
 
         cursor++;
 
-        return items.get(cursor);
+        return getResultItem(cursor);
     }
 
     public ResultItem current() {
@@ -119,7 +163,7 @@ public class CachedResultSequence extends AbstractResultSequence {
             throw new IllegalStateException("Cursor is not valid");
         }
 
-        return items.get(cursor);
+        return getResultItem(cursor);
     }
 
     public ResultItem resultItemAt(int index) {
@@ -129,7 +173,7 @@ public class CachedResultSequence extends AbstractResultSequence {
             throw new IllegalArgumentException("Index out of range: size=" + size() + ", requested=" + index);
         }
 
-        return items.get(index);
+        return getResultItem(index);
     }
 
     public void rewind() {
@@ -141,9 +185,47 @@ public class CachedResultSequence extends AbstractResultSequence {
     public Iterator<ResultItem> iterator() {
         assertNotClosed();
 
+        if (spill != null) {
+            return new AbstractList<ResultItem>() {
+                @Override
+                public ResultItem get(int index) {
+                    return getResultItem(index);
+                }
+
+                @Override
+                public int size() {
+                    return CachedResultSequence.this.size();
+                }
+            }.iterator();
+        }
+
         return Collections.unmodifiableList(items).iterator();
     }
 
+    public int readLongs(long[] dst, int offset, int length) {
+        checkBulkBounds(dst.length, offset, length);
+
+        assertNotClosed();
+
+        return readItems(BULK_LONGS, dst, offset, length);
+    }
+
+    public int readDoubles(double[] dst, int offset, int length) {
+        checkBulkBounds(dst.length, offset, length);
+
+        assertNotClosed();
+
+        return readItems(BULK_DOUBLES, dst, offset, length);
+    }
+
+    public int readStrings(String[] dst, int offset, int length) {
+        checkBulkBounds(dst.length, offset, length);
+
+        assertNotClosed();
+
+        return readItems(BULK_STRINGS, dst, offset, length);
+    }
+
     public ResultSequence toCached() {
         assertNotClosed();
 
@@ -162,7 +244,7 @@ public class CachedResultSequence extends AbstractResultSequence {
     }
 
     public boolean isEmpty() {
-        return (items.size() == 0);
+        return (size() == 0);
     }
 
     public ResultItem[] toResultItemArray() {
@@ -172,6 +254,10 @@ public class CachedResultSequence extends AbstractResultSequence {
 
         items.toArray(array);
 
+        for (int i = items.size(); i < array.length; i++) {
+            array[i] = getResultItem(i);
+        }
+
         return array;
     }
 
@@ -215,6 +301,257 @@ public class CachedResultSequence extends AbstractResultSequence {
 
     // -----------------------------------------------------------
 
+    // -----------------------------------------------------------
+    // Spilling to disk
+
+    private boolean overMemoryLimit(MultipartBuffer mbuf) {
+        long limit = options.getCacheResultMemoryLimit();
+
+        return (limit > 0) && (mbuf.getTotalBytesRead() > limit);
+    }
+
+    /**
+     * Write the rest of the result to a spill file, undecoded. Each part is checked as it goes by,
+     * so server errors and unsupported types are reported now, as they would be for items held in
+     * memory.
+     */
+    private void spillRemaining(MultipartBuffer mbuf, RequestOptions options) throws RequestException, IOException {
+        spill = new ResultSpillFile();
+
+        boolean complete = false;
+
+        try {
+            while ((sequencePart != null) || mbuf.hasNext()) {
+                if (sequencePart != null) {
+                    String[] entry = nextSequenceEntryText();
+
+                    decoderFor(entry[0], options);
+                    spill.addEntry(entry[0], entry[1], mbuf);
+                    continue;
+                }
+
+                String contentType = nextPart(mbuf);
+
+                if (sequencePart != null) {
+                    continue;
+                }
+
+                if ("true".equals(mbuf.getHeader("x-error"))) {
+                    // throws the exception described by the error part
+                    decodeResultItem(contentType, mbuf, size(), options);
+                }
+
+                String primitive = mbuf.getHeader("x-primitive");
+
+                if ((primitive == null) || (primitive.length() == 0)) {
+                    throw new IllegalStateException("Result item has no x-primitive header value");
+                }
+
+                decoderFor(primitive, options);
+                spill.addPart(mbuf);
+            }
+
+            spill.finish();
+            complete = true;
+        } finally {
+            if (!complete) {
+                spill.delete();
+                spill = null;
+            }
+        }
+    }
+
+    private ResultItem getResultItem(int index) {
+        if (index < items.size()) {
+            return items.get(index);
+        }
+
+        // keep current() returning the same object as the preceding next()
+        if (index != spilledIndex) {
+            spilledItem = readSpilledItem(index);
+            spilledIndex = index;
+        }
+
+        return spilledItem;
+    }
+
+    private ResultItem readSpilledItem(int index) {
+        try {
+            MultipartBuffer part = spill.part(index - items.size());
+            String contentType = part.getHeader("content-type");
+            XdmItem value;
+
+            if (SEQUENCE_CONTENT_TYPE.equals(contentType)) {
+                String primitive = part.getHeader("x-primitive");
+
+                value = decoderFor(primitive, options).decode(primitive, part.getBodyAsString(), options);
+            } else {
+                value = instantiateXdmItem(contentType, part, options);
+            }
+
+            ResultItem item = newResultItem(value, part, index);
+
+            item.cache();
+
+            return item;
+        } catch (RequestException e) {
+            throw new StreamingResultException("RequestException reading spilled ResultItem " + index + ": "
+                    + e.getMessage(), this, e);
+        } catch (IOException e) {
+            throw new StreamingResultException("IOException reading spilled ResultItem " + index + ": "
+                    + e.getMessage(), this, e);
+        }
+    }
+
+    // -----------------------------------------------------------
+    // Parallel decoding
+
+    private static ExecutorService decodePool = null;
+
+    private static synchronized ExecutorService getDecodePool() {
+        if (decodePool == null) {
+            int threads = Runtime.getRuntime().availableProcessors();
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                        private final AtomicInteger count = new AtomicInteger();
+
+                        public Thread newThread(Runnable task) {
+                            Thread thread = new Thread(task, "XCC result decoder " + count.incrementAndGet());
+
+                            thread.setDaemon(true);
+
+                            return thread;
+                        }
+                    });
+
+            pool.allowCoreThreadTimeOut(true);
+            decodePool = pool;
+        }
+
+        return decodePool;
+    }
+
+    /**
+     * Split the raw parts off the connection on this thread while they are decoded on the shared
+     * pool. No more than the configured number of parts are outstanding at once, and they are
+     * collected in arrival order. The entries of compact sequence parts are split and wrapped here,
+     * only the decoding of the part text is done by the pool.
+     */
+    private void cacheInParallel(MultipartBuffer mbuf, RequestOptions options) throws RequestException, IOException {
+        ExecutorService pool = getDecodePool();
+        int window = options.getResultDecodeThreads();
+        ArrayDeque<Future<PartDecoder>> pending = new ArrayDeque<Future<PartDecoder>>(window);
+        boolean complete = false;
+
+        try {
+            while (mbuf.hasNext() && !overMemoryLimit(mbuf)) {
+                mbuf.next();
+
+                String contentType = mbuf.getHeader("content-type");
+
+                if (contentType == null) {
+                    throw new IllegalStateException("No content-type header in part");
+                }
+
+                pending.add(pool.submit(new PartDecoder(contentType, mbuf.detachPart(), options)));
+
+                if (pending.size() >= window) {
+                    collect(pending.remove(), options);
+                }
+            }
+
+            while (!pending.isEmpty()) {
+                collect(pending.remove(), options);
+            }
+
+            complete = true;
+        } finally {
+            if (!complete) {
+                for (Future<PartDecoder> future : pending) {
+                    future.cancel(false);
+                }
+            }
+        }
+    }
+
+    private void collect(Future<PartDecoder> future, RequestOptions options) throws RequestException, IOException {
+        PartDecoder decoded = awaitDecoded(future);
+
+        if (decoded.sequence == null) {
+            ResultItem item = newResultItem(decoded.item, decoded.part, items.size());
+
+            item.cache();
+            items.add(item);
+
+            return;
+        }
+
+        sequencePart = decoded.sequence;
+        sequencePosition = 0;
+
+        while (sequencePart != null) {
+            ResultItem item = decodeResultItem(null, decoded.part, items.size(), options);
+
+            item.cache();
+            items.add(item);
+        }
+    }
+
+    private static PartDecoder awaitDecoded(Future<PartDecoder> future) throws RequestException, IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+
+            throw new InterruptedIOException("Interrupted while decoding result");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+
+            if (cause instanceof RequestException) {
+                throw (RequestException)cause;
+            }
+            if (cause instanceof IOException) {
+                throw (IOException)cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException)cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error)cause;
+            }
+
+            throw new IOException("Cannot decode result part: " + cause, cause);
+        }
+    }
+
+    /**
+     * Decodes one detached part on a pool thread: a compact sequence part to its text, any other
+     * part to its {@link XdmItem}.
+     */
+    private class PartDecoder implements Callable<PartDecoder> {
+        private final String contentType;
+        private final MultipartBuffer part;
+        private final RequestOptions options;
+        private String sequence = null;
+        private XdmItem item = null;
+
+        PartDecoder(String contentType, MultipartBuffer part, RequestOptions options) {
+            this.contentType = contentType;
+            this.part = part;
+            this.options = options;
+        }
+
+        public PartDecoder call() throws Exception {
+            if (contentType.equals(SEQUENCE_CONTENT_TYPE)) {
+                sequence = part.getBodyAsString();
+            } else {
+                item = instantiateXdmItem(contentType, part, options);
+            }
+
+            return this;
+        }
+    }
+
     private void assertNotClosed() {
         if (closed) {
             throw new IllegalStateException("ResultSequence is closed");
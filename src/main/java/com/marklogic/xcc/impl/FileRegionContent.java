@@ -0,0 +1,42 @@
+/*
+ * Copyright 2003-2016 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.xcc.impl;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+
+import com.marklogic.xcc.Content;
+
+/**
+ * {@link Content} whose data is the last {@link Content#size()} bytes of a file, starting at
+ * {@link #getFileOffset()}. On a plain socket connection the data is sent straight from the file
+ * with {@link FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)} instead
+ * of being read through {@link Content#openDataStream()}.
+ */
+public interface FileRegionContent extends Content {
+    /**
+     * Open the file for reading. As with {@link Content#openDataStream()}, the caller closes the
+     * channel once it has sent the data.
+     *
+     * @return A channel on the file. Its position is not used.
+     */
+    FileChannel openFileChannel() throws IOException;
+
+    /**
+     * @return The position in the file of the first byte of data.
+     */
+    long getFileOffset();
+}
@@ -15,6 +15,8 @@
  */
 package com.marklogic.xcc.impl;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.Map;
@@ -54,6 +56,8 @@ public class ModuleImpl extends RequestImpl implements ModuleInvoke, ModuleSpawn
 
     public void setModuleUri(String uri) {
         this.moduleUri = uri;
+
+        invalidatePreparedEncoding();
     }
 
     public String getModuleUri() {
@@ -77,10 +81,31 @@ public class ModuleImpl extends RequestImpl implements ModuleInvoke, ModuleSpawn
 
     public void setOldEncodingStyle(boolean oldEncodingStyle) {
         this.oldEncodingStyle = oldEncodingStyle;
+
+        invalidatePreparedEncoding();
+    }
+
+    boolean isSpawn() {
+        return spawn;
     }
 
     // ------------------------------------------------------
 
+    @Override
+    RequestImpl newInstance(Session session, RequestOptions options) {
+        ModuleImpl copy = new ModuleImpl(session, moduleUri, moduleRoot, options, spawn);
+
+        copy.oldEncodingStyle = oldEncodingStyle;
+
+        return copy;
+    }
+
+    // The old style generates a query with the variables written into it
+    @Override
+    boolean isEncodingReusable() {
+        return !oldEncodingStyle;
+    }
+
     @Override
     String requestVar() {
         if (oldEncodingStyle)
@@ -89,6 +114,17 @@ public class ModuleImpl extends RequestImpl implements ModuleInvoke, ModuleSpawn
         return "module";
     }
 
+    @Override
+    void appendBatchCall(StringBuffer sb, String targetExpr, String varsExpr, String optionsExpr) {
+        sb.append("xdmp:invoke(");
+        sb.append(targetExpr).append(", ").append(varsExpr).append(", ").append(optionsExpr).append(")");
+    }
+
+    @Override
+    String batchTarget() {
+        return moduleUri;
+    }
+
     @Override
     String serverPath() {
         if (oldEncodingStyle)
@@ -98,7 +134,7 @@ public class ModuleImpl extends RequestImpl implements ModuleInvoke, ModuleSpawn
     }
 
     @Override
-    void urlEncodeXQueryString(StringBuffer sb, Logger logger) {
+    void urlEncodeXQueryString(OutputStream out, Logger logger) throws IOException {
         if (oldEncodingStyle) {
             XdmVariable[] vars = getVariables();
             Map<String,String> qnameMap = generateQNameMap(vars);
@@ -108,9 +144,9 @@ public class ModuleImpl extends RequestImpl implements ModuleInvoke, ModuleSpawn
             putPrologue(modcall, vars, qnameMap);
             putFunctionCall(modcall, getModuleUri(), getSession().getContentBaseName(), vars, qnameMap);
 
-            IOHelper.urlEncodeToStringBuffer(sb, modcall.toString());
+            IOHelper.urlEncodeToStream(out, modcall.toString());
         } else {
-            IOHelper.urlEncodeToStringBuffer(sb, moduleUri);
+            IOHelper.urlEncodeToStream(out, moduleUri);
         }
     }
 
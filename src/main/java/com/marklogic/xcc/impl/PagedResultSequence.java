@@ -0,0 +1,513 @@
+/*
+ * Copyright 2003-2016 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.xcc.impl;
+
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.marklogic.xcc.RequestOptions;
+import com.marklogic.xcc.ResultChannelName;
+import com.marklogic.xcc.ResultItem;
+import com.marklogic.xcc.ResultSequence;
+import com.marklogic.xcc.exceptions.RequestException;
+import com.marklogic.xcc.exceptions.StreamingResultException;
+import com.marklogic.xcc.types.ValueType;
+import com.marklogic.xcc.types.XdmItem;
+import com.marklogic.xcc.types.impl.SequenceImpl;
+
+/**
+ * A forward-only {@link ResultSequence} over a result fetched one cached page at a time, with the
+ * next page requested in the background while the current one is consumed. Pages are requested on
+ * a clone of the submitting session, so they use their own connections and never run inside a
+ * transaction of that session.
+ */
+public class PagedResultSequence extends AbstractResultSequence {
+    private static final ExecutorService fetchPool = Executors.newCachedThreadPool(new ThreadFactory() {
+        private final AtomicInteger count = new AtomicInteger();
+
+        public Thread newThread(Runnable task) {
+            Thread thread = new Thread(task, "XCC page fetcher " + count.incrementAndGet());
+
+            thread.setDaemon(true);
+
+            return thread;
+        }
+    });
+
+    private final SessionImpl pageSession;
+    private final RequestImpl pageRequest;
+    private final int pageSize;
+    private final long endPosition;
+    private final Logger logger;
+    private ResultSequence page;
+    private Future<ResultSequence> nextPage = null;
+    private long nextPosition;
+    private long totalBytesRead = 0;
+    private volatile boolean closed = false;
+    private int cursor = -1;
+    private ResultItem currentItem = null;
+    private PageIterator currentIterator = null;
+
+    PagedResultSequence(SessionImpl session, RequestImpl request, int pageSize, Logger logger)
+            throws RequestException {
+        super(request);
+        this.pageSize = pageSize;
+        this.logger = logger;
+
+        pageSession = session.clone();
+        pageSession.setLogger(session.getLogger());
+
+        RequestOptions options = request.getEffectiveOptions();
+
+        options.setCacheResult(true);
+
+        if (options.getEffectivePointInTime() == null) {
+            options.setEffectivePointInTime(pageSession.getCurrentServerPointInTime());
+        }
+
+        pageRequest = request.copyFor(pageSession, options);
+
+        long count = request.getCount();
+
+        nextPosition = request.getPosition();
+        endPosition = (count >= (Long.MAX_VALUE - nextPosition)) ? Long.MAX_VALUE : (nextPosition + count);
+
+        boolean started = false;
+
+        try {
+            long position = nextPosition;
+            long length = pageLength();
+
+            nextPosition += length;
+            page = fetchPage(position, length);
+            prefetch();
+            started = true;
+        } finally {
+            if (!started) {
+                pageSession.close();
+            }
+        }
+    }
+
+    // ----------------------------------------------------------
+    // ResultSequence interface
+
+    public int size() {
+        return -1;
+    }
+
+    public boolean isCached() {
+        return false;
+    }
+
+    public long getTotalBytesRead() {
+        return totalBytesRead + ((page == null) ? 0 : ((AbstractResultSequence)page).getTotalBytesRead());
+    }
+
+    public void close() {
+        if (closed) {
+            return;
+        }
+
+        closed = true;
+        currentItem = null;
+
+        invalidateCurrentIterator();
+
+        if (nextPage != null) {
+            discardNextPage();
+        }
+
+        if (page != null) {
+            totalBytesRead += ((AbstractResultSequence)page).getTotalBytesRead();
+            page.close();
+            page = null;
+        }
+
+        pageSession.close();
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    private boolean hasNext(PageIterator it) {
+        if (closed) {
+            return false;
+        }
+
+        if (it != currentIterator) {
+            invalidateCurrentIterator();
+        }
+
+        return advanceToItem();
+    }
+
+    public boolean hasNext() {
+        return hasNext(null);
+    }
+
+    private ResultItem next(PageIterator it) {
+        assertNotClosed();
+
+        if (it != currentIterator) {
+            invalidateCurrentIterator();
+        }
+
+        if (!advanceToItem()) {
+            currentItem = null;
+            cursor = -1;
+
+            return null;
+        }
+
+        // renumber the item, its own index is relative to its page
+        ResultItem item = page.next();
+
+        cursor++;
+        currentItem = new ResultItemImpl(item.getItem(), cursor, item.getDocumentURI(), item.getNodePath());
+
+        return currentItem;
+    }
+
+    public ResultItem next() {
+        return next(null);
+    }
+
+    public ResultItem current() {
+        assertNotClosed();
+
+        if (currentItem == null) {
+            throw new IllegalStateException("No current item");
+        }
+
+        return currentItem;
+    }
+
+    public ResultItem resultItemAt(int index) {
+        assertNotClosed();
+
+        if ((cursor == -1) || (index != cursor)) {
+            throw new IllegalArgumentException("Index out of range or not current, index=" + index);
+        }
+
+        return currentItem;
+    }
+
+    public XdmItem itemAt(int index) {
+        return (resultItemAt(index).getItem());
+    }
+
+    public void rewind() {
+        assertNotClosed();
+
+        throw new IllegalStateException("Cannot rewind paged result sequences");
+    }
+
+    public int readLongs(long[] dst, int offset, int length) {
+        assertNotClosed();
+        checkBulkBounds(dst.length, offset, length);
+
+        return readItems(BULK_LONGS, dst, offset, length);
+    }
+
+    public int readDoubles(double[] dst, int offset, int length) {
+        assertNotClosed();
+        checkBulkBounds(dst.length, offset, length);
+
+        return readItems(BULK_DOUBLES, dst, offset, length);
+    }
+
+    public int readStrings(String[] dst, int offset, int length) {
+        assertNotClosed();
+        checkBulkBounds(dst.length, offset, length);
+
+        return readItems(BULK_STRINGS, dst, offset, length);
+    }
+
+    public ResultSequence toCached() {
+        assertNotClosed();
+
+        List<ResultItem> list = new ArrayList<ResultItem>();
+
+        while (hasNext()) {
+            list.add(next());
+        }
+
+        close();
+
+        return new CachedResultSequence(request, list, totalBytesRead);
+    }
+
+    public ResultItem[] toResultItemArray() {
+        List<ResultItem> list = new ArrayList<ResultItem>();
+
+        while (hasNext()) {
+            list.add(next());
+        }
+
+        close();
+
+        return list.toArray(new ResultItem[list.size()]);
+    }
+
+    public ResultSequence getChannel(ResultChannelName channel) {
+        assertNotClosed();
+
+        if (channel == ResultChannelName.PRIMARY) {
+            return (this);
+        }
+
+        return new EmptyResultSequence(this);
+    }
+
+    // -----------------------------------------------------------------
+    // XdmSequence interface
+
+    public Iterator<ResultItem> iterator() {
+        assertNotClosed();
+
+        invalidateCurrentIterator();
+
+        currentIterator = new PageIterator(this);
+
+        return (currentIterator);
+    }
+
+    public boolean isEmpty() {
+        return (cursor == -1) && !hasNext();
+    }
+
+    public XdmItem[] toArray() {
+        ResultItem[] resultItems = toResultItemArray();
+        XdmItem[] array = new XdmItem[resultItems.length];
+
+        for (int i = 0; i < resultItems.length; i++) {
+            array[i] = resultItems[i].getItem();
+        }
+
+        return array;
+    }
+
+    public String asString(String separator) {
+        return toCached().asString(separator);
+    }
+
+    public String asString() {
+        return (asString("\n"));
+    }
+
+    public String[] asStrings() {
+        return SequenceImpl.asStringArray(this);
+    }
+
+    public ValueType getValueType() {
+        return (ValueType.SEQUENCE);
+    }
+
+    // -----------------------------------------------------------
+
+    @Override
+    public String toString() {
+        return "PagedResultSequence: pageSize=" + pageSize + ", closed=" + closed + ", cursor=" + cursor;
+    }
+
+    // -----------------------------------------------------------
+
+    private long pageLength() {
+        return Math.min(pageSize, endPosition - nextPosition);
+    }
+
+    // Runs on a fetch thread for all but the first page, at most one fetch is in progress at a time
+    private ResultSequence fetchPage(long position, long count) throws RequestException {
+        pageRequest.setPosition(position);
+        pageRequest.setCount(count);
+
+        return pageSession.submitRequest(pageRequest);
+    }
+
+    // Start fetching the page after the current one, unless the current one is the last
+    private void prefetch() {
+        if ((page.size() < pageSize) || (nextPosition >= endPosition)) {
+            return;
+        }
+
+        final long position = nextPosition;
+        final long count = pageLength();
+
+        nextPosition += count;
+        nextPage = fetchPool.submit(new Callable<ResultSequence>() {
+            public ResultSequence call() throws RequestException {
+                // Not worth fetching once closed, close() waits for this either way
+                if (closed) {
+                    return null;
+                }
+
+                return fetchPage(position, count);
+            }
+        });
+    }
+
+    // Move on through the pages until the current one has an item left, or there are no more
+    private boolean advanceToItem() {
+        while (!page.hasNext()) {
+            if (nextPage == null) {
+                return false;
+            }
+
+            ResultSequence fetched = awaitNextPage();
+
+            totalBytesRead += ((AbstractResultSequence)page).getTotalBytesRead();
+            page.close();
+            page = fetched;
+
+            prefetch();
+        }
+
+        return true;
+    }
+
+    private ResultSequence awaitNextPage() {
+        Future<ResultSequence> future = nextPage;
+
+        nextPage = null;
+
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+
+            String msg = "Interrupted waiting for result page at ResultItem " + (cursor + 1);
+            logger.log(Level.SEVERE, msg, e);
+            throw new StreamingResultException(msg, this, e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException)cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error)cause;
+            }
+
+            String msg = "Exception fetching result page at ResultItem " + (cursor + 1) + ": " + cause.getMessage();
+            logger.log(Level.SEVERE, msg, cause);
+            throw new StreamingResultException(msg, this, cause);
+        }
+    }
+
+    // Cancelling would not stop a fetch already using the page session, so wait it out
+    // before the session is closed and close whatever page it produced
+    private void discardNextPage() {
+        Future<ResultSequence> future = nextPage;
+        boolean interrupted = false;
+
+        nextPage = null;
+
+        try {
+            while (true) {
+                try {
+                    ResultSequence fetched = future.get();
+
+                    if (fetched != null) {
+                        fetched.close();
+                    }
+
+                    return;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    logger.log(Level.FINE, "discarding failed result page fetch", e.getCause());
+                    return;
+                } catch (CancellationException e) {
+                    return;
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void assertNotClosed() {
+        if (closed) {
+            throw new IllegalStateException("ResultSequence is closed");
+        }
+    }
+
+    // -----------------------------------------------------------
+
+    private void invalidateCurrentIterator() {
+        if (currentIterator != null) {
+            currentIterator.invalidate();
+        }
+    }
+
+    private static class PageIterator implements Iterator<ResultItem> {
+        private final PagedResultSequence parent;
+        private volatile boolean invalidated = false;
+
+        public PageIterator(PagedResultSequence parent) {
+            this.parent = parent;
+        }
+
+        public boolean hasNext() {
+            assertValid();
+
+            return parent.hasNext(this);
+        }
+
+        public ResultItem next() {
+            assertValid();
+
+            ResultItem obj = parent.next(this);
+
+            if (obj == null) {
+                throw new NoSuchElementException("No more items in ResultSequence");
+            }
+
+            return obj;
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException("ResultSequences are not mutable");
+        }
+
+        private void invalidate() {
+            invalidated = true;
+        }
+
+        private void assertValid() {
+            if (invalidated) {
+                throw new ConcurrentModificationException("This Iterator has been invalidated");
+            }
+        }
+    }
+}
@@ -15,30 +15,44 @@
  */
 package com.marklogic.xcc.impl;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.TimeZone;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import com.marklogic.io.ByteSource;
 import com.marklogic.io.IOHelper;
 import com.marklogic.xcc.Request;
 import com.marklogic.xcc.RequestOptions;
+import com.marklogic.xcc.ResultSequence;
 import com.marklogic.xcc.Session;
 import com.marklogic.xcc.ValueFactory;
-import com.marklogic.xcc.exceptions.UnimplementedFeatureException;
+import com.marklogic.xcc.exceptions.RequestException;
 import com.marklogic.xcc.types.ValueType;
 import com.marklogic.xcc.types.XName;
 import com.marklogic.xcc.types.XdmSequence;
 import com.marklogic.xcc.types.XdmValue;
 import com.marklogic.xcc.types.XdmVariable;
+import com.marklogic.xcc.types.impl.StreamedValue;
 
 public abstract class RequestImpl implements Request {
     private final Session session;
     private RequestOptions options;
     private Set<XdmVariable> variables = Collections.synchronizedSet(new LinkedHashSet<XdmVariable>());
+    private final List<XdmVariable[]> batch = new ArrayList<XdmVariable[]>();
     private long position = 1; // beginning position of the requested subsequence
     private long count = Long.MAX_VALUE; // count of the requested subsequence
+    private boolean prepared = false;
+    private PreparedEncoding preparedEncoding = null;
     
     // ---------------------------------------------------
 
@@ -50,12 +64,34 @@ public abstract class RequestImpl implements Request {
 
     // ---------------------------------------------------
 
-    abstract void urlEncodeXQueryString(StringBuffer sb, Logger logger);
+    abstract void urlEncodeXQueryString(OutputStream out, Logger logger) throws IOException;
 
     abstract String serverPath();
 
     abstract String requestVar();
 
+    abstract RequestImpl newInstance(Session session, RequestOptions options);
+
+    /**
+     * Append to a generated XQuery expression the call that runs this request with the variables
+     * in <code>varsExpr</code>, a map:map expression, given the query text or module URI as
+     * <code>targetExpr</code>.
+     */
+    abstract void appendBatchCall(StringBuffer sb, String targetExpr, String varsExpr, String optionsExpr);
+
+    /**
+     * The query text or module URI that {@link #appendBatchCall} runs.
+     */
+    abstract String batchTarget();
+
+    /**
+     * Whether the encoding of the query text depends only on the query and options, and so can be
+     * reused by a prepared request.
+     */
+    boolean isEncodingReusable() {
+        return true;
+    }
+
     // ---------------------------------------------------
 
     public Session getSession() {
@@ -68,6 +104,8 @@ public abstract class RequestImpl implements Request {
         } else {
             this.options = options;
         }
+
+        invalidatePreparedEncoding();
     }
 
     public RequestOptions getOptions() {
@@ -84,13 +122,36 @@ public abstract class RequestImpl implements Request {
         return eff;
     }
 
-    public void setVariable(XdmVariable variable) {
-        XdmValue value = variable.getValue();
+    public void prepare() {
+        prepared = true;
+        preparedEncoding = null;
+    }
 
-        if (value instanceof XdmSequence<?>) {
-            throw new UnimplementedFeatureException("Setting variables that are sequences is not supported");
-        }
-        
+    public boolean isPrepared() {
+        return prepared;
+    }
+
+    /**
+     * Drop the cached encoding of a prepared request, it is rebuilt when next submitted.
+     */
+    void invalidatePreparedEncoding() {
+        preparedEncoding = null;
+    }
+
+    /**
+     * Copy this request, with its variables and position range, for submission on another session.
+     */
+    RequestImpl copyFor(Session session, RequestOptions options) {
+        RequestImpl copy = newInstance(session, options);
+
+        copy.variables.addAll(Arrays.asList(getVariables()));
+        copy.position = position;
+        copy.count = count;
+
+        return copy;
+    }
+
+    public void setVariable(XdmVariable variable) {
         synchronized (variables) {
             // "set" implies replacing a var with the same XName, add() doesn't replace
             clearVariable(variable);
@@ -148,6 +209,56 @@ public abstract class RequestImpl implements Request {
         }
     }
 
+    /**
+     * @return true if any variable's value is a sequence, which can't be sent as an external
+     *         variable and has to be passed through a driver query instead.
+     */
+    boolean hasSequenceVariables() {
+        XdmVariable[] vars = getVariables();
+
+        for (int i = 0; i < vars.length; i++) {
+            if (vars[i].getValue() instanceof XdmSequence<?>) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    // -----------------------------------------------------
+
+    public void addBatch() {
+        XdmVariable[] vars = getVariables();
+
+        synchronized (batch) {
+            batch.add(vars);
+        }
+    }
+
+    public void clearBatch() {
+        synchronized (batch) {
+            batch.clear();
+        }
+    }
+
+    public int getBatchSize() {
+        synchronized (batch) {
+            return batch.size();
+        }
+    }
+
+    public ResultSequence[] executeBatch() throws RequestException {
+        XdmVariable[][] sets;
+
+        synchronized (batch) {
+            sets = batch.toArray(new XdmVariable[batch.size()][]);
+
+            batch.clear();
+        }
+
+        return ((SessionImpl)session).submitBatch(this, sets);
+    }
+
     // -----------------------------------------------------
 
     public long getPosition() {
@@ -166,29 +277,27 @@ public abstract class RequestImpl implements Request {
         this.count = count;
     }
 
-    String encodedQueryString(Logger logger) {
-        StringBuffer sb = new StringBuffer();
-
-        sb.append(requestVar()).append("=");
-        urlEncodeXQueryString(sb, logger);
+    /**
+     * Capture the form-encoded body of this request for one submission. The body is not encoded
+     * until it is written, and then it is encoded straight into the stream it is written to.
+     */
+    public EncodedBody encodedBody(Logger logger) throws IOException {
+        return new EncodedBody(logger);
+    }
 
-        encodeQueryOptions(sb, null);
+    // The query text or module URI and the options, everything that a prepared request reuses
+    private void writeEncodedHead(OutputStream out, RequestOptions options, Logger logger) throws IOException {
+        out.write(IOHelper.getUtf8Bytes(requestVar() + "="));
 
-        encodeQueryVariables(sb, logger);
-        
-        encodePositionRange(sb);
-        
-        encodeTxn(sb);
+        urlEncodeXQueryString(out, logger);
 
-        String payload = sb.toString();
+        StringBuffer sb = new StringBuffer();
 
-        if (logger.isLoggable(Level.FINEST)) {
-            logger.finest("Eval request POST payload: '" + payload + "'");
-        }
+        encodeFixedQueryOptions(sb, options);
 
-        return (payload);
+        out.write(IOHelper.getUtf8Bytes(sb.toString()));
     }
-    
+
     public void encodeTxn(StringBuffer sb) {
         if (((SessionImpl)session).txnID != null) {
             sb.append("&txnid=").append(((SessionImpl)session).txnID);
@@ -216,8 +325,18 @@ public abstract class RequestImpl implements Request {
     public void encodeQueryOptions(StringBuffer sb, RequestOptions requestOptions) {
         RequestOptions options = (requestOptions == null) ? getEffectiveOptions() : requestOptions;
 
+        encodeFixedQueryOptions(sb, options);
+
+        encodeTimeZoneOffset(sb, options.getTimeZone());
+    }
+
+    // The offset changes with daylight saving time, so is worked out for each submission
+    private void encodeTimeZoneOffset(StringBuffer sb, TimeZone timeZone) {
+        sb.append("&tzoffset=").append((timeZone.getOffset(System.currentTimeMillis())) / 1000);
+    }
+
+    private void encodeFixedQueryOptions(StringBuffer sb, RequestOptions options) {
         sb.append("&locale=").append(options.getLocale().toString());
-        sb.append("&tzoffset=").append((options.getTimeZone().getOffset(System.currentTimeMillis())) / 1000);
 
         if (session.getContentBaseName() != null) {
             String dbname = session.getContentBaseName();
@@ -249,13 +368,12 @@ public abstract class RequestImpl implements Request {
         }
     }
 
-    private void encodeQueryVariables(StringBuffer sb, Logger logger) {
-        XdmVariable[] vars = getVariables();
-
+    private void writeQueryVariables(OutputStream out, XdmVariable[] vars, Logger logger) throws IOException {
         for (int i = 0; i < vars.length; i++) {
             XdmVariable var = vars[i];
             XName xname = var.getName();
             XdmValue value = var.getValue();
+            StringBuffer sb = new StringBuffer();
 
             sb.append("&evn").append(i).append("=");
             if (xname.getNamespace() != null) {
@@ -263,19 +381,283 @@ public abstract class RequestImpl implements Request {
             }
 
             sb.append("&evl").append(i).append("=").append(xname.getLocalname());
+
             sb.append("&evt").append(i).append("=");
             IOHelper.urlEncodeToStringBuffer(sb, value.getValueType().toString());
             sb.append("&evv").append(i).append("=");
-            IOHelper.urlEncodeToStringBuffer(sb, value.asString());
+
+            out.write(IOHelper.getUtf8Bytes(sb.toString()));
+
+            writeValue(out, value);
 
             // TODO: Test this output
             if (logger.isLoggable(Level.FINEST)) {
+                ByteSource source = valueSource(value);
+
                 logger.finest(" ev" + i + ": " + xname.toString() + "(" + value.getValueType() + ") "
-                        + value.toString());
+                        + ((source == null) ? value.toString() : source.toString()));
             }
         }
     }
 
+    /**
+     * Values backed by a {@link ByteSource} are URL-encoded from their bytes as they are read,
+     * anything else from its String form.
+     */
+    private static void writeValue(OutputStream out, XdmValue value) throws IOException {
+        ByteSource source = valueSource(value);
+
+        if (source == null) {
+            IOHelper.urlEncodeToStream(out, value.asString());
+
+            return;
+        }
+
+        InputStream in = source.openStream();
+
+        try {
+            IOHelper.urlEncodeToStream(out, in);
+        } finally {
+            in.close();
+        }
+    }
+
+    private static ByteSource valueSource(XdmValue value) {
+        return (value instanceof StreamedValue) ? ((StreamedValue)value).getValueSource() : null;
+    }
+
+    /**
+     * @return false if any variable value is streamed from a source that can only be read once.
+     */
+    private static boolean areReplayable(XdmVariable[] vars) {
+        for (int i = 0; i < vars.length; i++) {
+            if (!isReplayable(vars[i].getValue())) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static boolean isReplayable(XdmValue value) {
+        ByteSource source = valueSource(value);
+
+        return (source == null) || source.isReplayable();
+    }
+
+    /**
+     * The part of a prepared request's payload that stays the same from one submission to the
+     * next: the query text or module URI and the options. It is built from the options objects set
+     * on this request and its session at the time, and is only used while those same objects are
+     * still set.
+     */
+    private class PreparedEncoding {
+        private final byte[] head;
+        private final TimeZone timeZone;
+        private final RequestOptions requestOptions;
+        private final RequestOptions sessionOptions;
+
+        PreparedEncoding(Logger logger) throws IOException {
+            RequestOptions options = getEffectiveOptions();
+
+            requestOptions = getOptions();
+            sessionOptions = getSession().getDefaultRequestOptions();
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+            writeEncodedHead(bytes, options, logger);
+
+            head = bytes.toByteArray();
+            timeZone = options.getTimeZone();
+        }
+
+        boolean isCurrent() {
+            return (requestOptions == getOptions()) && (sessionOptions == getSession().getDefaultRequestOptions());
+        }
+    }
+
+    /**
+     * The body of one submission of this request. The values that can change from one moment to
+     * the next, the time zone offset, variables and transaction state, are fixed when it is
+     * created, so {@link #length()} and {@link #writeTo(OutputStream)} agree with each other.
+     * Large values, the query text and variable values, are URL-encoded straight into the output
+     * rather than being built up in memory first. Variable values backed by a {@link ByteSource}
+     * are read again for each pass, unless one of them can only be read once, in which case the
+     * body is not replayable and its length is not known in advance.
+     * <p>
+     * A replayable body too long to buffer may be encoded three times, so a file or other
+     * {@link ByteSource} value is read up to three times: by {@link #toByteArray(int)}, up to
+     * the limit, by {@link #length()} and by {@link #writeTo(OutputStream)}. The first pass is
+     * skipped when the sources' own lengths already add up to more than the limit.
+     */
+    public class EncodedBody {
+        private final Logger logger;
+        private final byte[] head;
+        private final RequestOptions options;
+        private final byte[] timeZoneOffset;
+        private final XdmVariable[] vars;
+        private final boolean replayable;
+        private final byte[] tail;
+
+        EncodedBody(Logger logger) throws IOException {
+            StringBuffer sb = new StringBuffer();
+            TimeZone timeZone;
+
+            this.logger = logger;
+
+            if (prepared && isEncodingReusable()) {
+                PreparedEncoding encoding = preparedEncoding;
+
+                if ((encoding == null) || !encoding.isCurrent()) {
+                    encoding = new PreparedEncoding(logger);
+                    preparedEncoding = encoding;
+                }
+
+                head = encoding.head;
+                options = null;
+                timeZone = encoding.timeZone;
+            } else {
+                head = null;
+                options = getEffectiveOptions();
+                timeZone = options.getTimeZone();
+            }
+
+            encodeTimeZoneOffset(sb, timeZone);
+            timeZoneOffset = IOHelper.getUtf8Bytes(sb.toString());
+
+            vars = getVariables();
+            replayable = areReplayable(vars);
+
+            sb.setLength(0);
+            encodePositionRange(sb);
+            encodeTxn(sb);
+            tail = IOHelper.getUtf8Bytes(sb.toString());
+        }
+
+        /**
+         * @return false if the body streams a value that can only be read once, so it can only be
+         *         written once, and {@link #length()} is not available.
+         */
+        public boolean isReplayable() {
+            return replayable;
+        }
+
+        /**
+         * The encoded body, if it is no longer than the limit. Encoding stops as soon as the body
+         * passes the limit, so trying a large body costs no more than encoding the limit.
+         *
+         * @return The body, or null if it is longer than the limit or is not replayable.
+         */
+        public byte[] toByteArray(int limit) throws IOException {
+            if (!replayable || (sourceLength() > limit)) {
+                return null;
+            }
+
+            LimitedBuffer buffer = new LimitedBuffer(limit);
+
+            try {
+                writeTo(buffer);
+            } catch (LimitExceededException e) {
+                return null;
+            }
+
+            return buffer.toByteArray();
+        }
+
+        /**
+         * The length in bytes of the body. It is encoded to work this out, but none of it is kept,
+         * so use it only for a body too long for {@link #toByteArray(int)}.
+         *
+         * @return The length, or -1 if the body is not replayable.
+         */
+        public long length() throws IOException {
+            if (!replayable) {
+                return -1;
+            }
+
+            ByteCounter counter = new ByteCounter();
+
+            writeTo(counter);
+
+            return counter.count;
+        }
+
+        // URL-encoding never shrinks a value, so this is a lower bound on the encoded length
+        private long sourceLength() {
+            long length = 0;
+
+            for (int i = 0; i < vars.length; i++) {
+                ByteSource source = valueSource(vars[i].getValue());
+
+                if ((source != null) && (source.length() > 0)) {
+                    length += source.length();
+                }
+            }
+
+            return length;
+        }
+
+        public void writeTo(OutputStream out) throws IOException {
+            if (head != null) {
+                out.write(head);
+            } else {
+                writeEncodedHead(out, options, logger);
+            }
+
+            out.write(timeZoneOffset);
+
+            writeQueryVariables(out, vars, logger);
+
+            out.write(tail);
+        }
+    }
+
+    private static class LimitedBuffer extends ByteArrayOutputStream {
+        private final int limit;
+
+        LimitedBuffer(int limit) {
+            this.limit = limit;
+        }
+
+        @Override
+        public void write(int b) {
+            if (count >= limit) {
+                throw new LimitExceededException();
+            }
+
+            super.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            if (len > (limit - count)) {
+                throw new LimitExceededException();
+            }
+
+            super.write(b, off, len);
+        }
+    }
+
+    // Unchecked, so it gets out of the ByteArrayOutputStream methods, which don't throw
+    private static class LimitExceededException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+    }
+
+    private static class ByteCounter extends OutputStream {
+        private long count = 0;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+
+    // -----------------------------------------------------
+
     protected boolean isName(String name) {
         if (name.length() == 0)
             return true;
@@ -0,0 +1,289 @@
+/*
+ * Copyright 2003-2016 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.xcc.impl;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.marklogic.http.HttpHeaders;
+import com.marklogic.http.MultipartBuffer;
+import com.marklogic.io.ByteBufferInputStream;
+
+/**
+ * <p>
+ * Holds the items of a cached result that did not fit in its memory budget. Each item is appended
+ * to a temporary file as a record of the headers and raw body of the part it came from. When the
+ * whole result has been written the file is mapped, and each record can then be handed back as a
+ * stand-alone {@link MultipartBuffer} reading from the mapped bytes, to be decoded again.
+ * </p>
+ * <p>
+ * An item that arrived as an entry of a compact sequence part is stored as a part of its own, with
+ * the sequence content type and an x-primitive header.
+ * </p>
+ */
+final class ResultSpillFile {
+    // the headers that matter when decoding a part
+    private static final String[] PART_HEADERS = { "content-type", "x-primitive", "x-uri", "x-path", "x-attr" };
+
+    private final File file;
+    private CountingOutputStream counter;
+    private DataOutputStream out;
+    private long[] offsets = new long[256];
+    private int size = 0;
+    private long length;
+
+    // set by finish(): each mapping covers whole records, from record mappingFirst[i] on
+    private MappedByteBuffer[] mappings;
+    private long[] mappingStart;
+    private int[] mappingFirst;
+
+    ResultSpillFile() throws IOException {
+        file = File.createTempFile("xcc-result-", ".spill");
+
+        counter = new CountingOutputStream(new BufferedOutputStream(new FileOutputStream(file), 64 * 1024));
+        out = new DataOutputStream(counter);
+    }
+
+    int size() {
+        return size;
+    }
+
+    // ------------------------------------------------------------
+
+    /**
+     * Append an entry of a compact sequence part.
+     * 
+     * @param sequencePart
+     *            The buffer positioned on the sequence part, for its x-uri and x-path headers.
+     */
+    void addEntry(String primitive, String body, MultipartBuffer sequencePart) throws IOException {
+        startRecord();
+
+        String[] values = { AbstractResultSequence.SEQUENCE_CONTENT_TYPE, primitive,
+                sequencePart.getHeader("x-uri"), sequencePart.getHeader("x-path"), null };
+
+        writeHeaders(values);
+        out.write(body.getBytes("UTF-8"));
+    }
+
+    /**
+     * Append the part mbuf is positioned on, consuming its body.
+     */
+    void addPart(MultipartBuffer mbuf) throws IOException {
+        startRecord();
+
+        String[] values = new String[PART_HEADERS.length];
+
+        for (int i = 0; i < PART_HEADERS.length; i++) {
+            values[i] = mbuf.getHeader(PART_HEADERS[i]);
+        }
+
+        writeHeaders(values);
+
+        InputStream body = mbuf.getBodyStream();
+        byte[] buffer = new byte[16 * 1024];
+        int rc;
+
+        while ((rc = body.read(buffer, 0, buffer.length)) > 0) {
+            out.write(buffer, 0, rc);
+        }
+    }
+
+    /**
+     * Close the file for writing and map it.
+     */
+    void finish() throws IOException {
+        out.close();
+        out = null;
+        length = counter.count;
+
+        List<MappedByteBuffer> maps = new ArrayList<MappedByteBuffer>();
+        long[] starts = new long[size];
+        int[] firsts = new int[size];
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+
+        try {
+            FileChannel channel = raf.getChannel();
+            int i = 0;
+
+            while (i < size) {
+                long start = offsets[i];
+
+                if ((recordEnd(i) - start) > Integer.MAX_VALUE) {
+                    throw new IOException("Result item " + i + " is too large to spill to disk");
+                }
+
+                int last = i;
+
+                while (((last + 1) < size) && ((recordEnd(last + 1) - start) <= Integer.MAX_VALUE)) {
+                    last++;
+                }
+
+                starts[maps.size()] = start;
+                firsts[maps.size()] = i;
+                maps.add(channel.map(FileChannel.MapMode.READ_ONLY, start, recordEnd(last) - start));
+
+                i = last + 1;
+            }
+        } finally {
+            raf.close();
+        }
+
+        mappings = maps.toArray(new MappedByteBuffer[maps.size()]);
+        mappingStart = Arrays.copyOf(starts, mappings.length);
+        mappingFirst = Arrays.copyOf(firsts, mappings.length);
+    }
+
+    /**
+     * @return A stand-alone buffer positioned on record i, reading from the mapped file.
+     */
+    MultipartBuffer part(int i) throws IOException {
+        int m = Arrays.binarySearch(mappingFirst, i);
+
+        if (m < 0) {
+            m = -m - 2;
+        }
+
+        ByteBuffer buffer = mappings[m].duplicate();
+
+        buffer.limit((int)(recordEnd(i) - mappingStart[m]));
+        buffer.position((int)(offsets[i] - mappingStart[m]));
+
+        ByteBufferInputStream stream = new ByteBufferInputStream(buffer);
+        DataInputStream data = new DataInputStream(stream);
+        HttpHeaders headers = new HttpHeaders();
+        int count = data.readUnsignedByte();
+
+        for (int h = 0; h < count; h++) {
+            headers.setHeader(readString(data), readString(data));
+        }
+
+        return new MultipartBuffer(headers, stream);
+    }
+
+    /**
+     * Drop the mappings and delete the file. The space is only released once the mappings have
+     * been garbage collected, on some platforms the file cannot be deleted before then and is
+     * removed when this object is finalized instead.
+     */
+    void delete() {
+        if (out != null) {
+            try {
+                out.close();
+            } catch (IOException e) {
+                // nothing useful to do, the file is being discarded
+            }
+
+            out = null;
+        }
+
+        mappings = null;
+        file.delete();
+    }
+
+    // Backstop for a spill file that was never deleted, or could not be while still mapped
+    @Override
+    protected void finalize() throws Throwable {
+        try {
+            delete();
+        } finally {
+            super.finalize();
+        }
+    }
+
+    // ------------------------------------------------------------
+
+    private void startRecord() {
+        if (size == offsets.length) {
+            offsets = Arrays.copyOf(offsets, size * 2);
+        }
+
+        offsets[size++] = counter.count;
+    }
+
+    private void writeHeaders(String[] values) throws IOException {
+        int count = 0;
+
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != null) {
+                count++;
+            }
+        }
+
+        out.writeByte(count);
+
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != null) {
+                writeString(PART_HEADERS[i]);
+                writeString(values[i]);
+            }
+        }
+    }
+
+    // Length-prefixed UTF-8, DataOutput.writeUTF() is limited to 64K encoded bytes
+    private void writeString(String value) throws IOException {
+        byte[] bytes = value.getBytes("UTF-8");
+
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream data) throws IOException {
+        byte[] bytes = new byte[data.readInt()];
+
+        data.readFully(bytes);
+
+        return new String(bytes, "UTF-8");
+    }
+
+    private long recordEnd(int i) {
+        return ((i + 1) < size) ? offsets[i + 1] : length;
+    }
+
+    private static class CountingOutputStream extends FilterOutputStream {
+        private long count = 0;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte b[], int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+}
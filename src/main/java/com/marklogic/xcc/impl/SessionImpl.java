@@ -51,6 +51,7 @@ import com.marklogic.xcc.spi.ConnectionProvider;
 import com.marklogic.xcc.spi.SingleHostAddress;
 import com.marklogic.xcc.types.XSDecimal;
 import com.marklogic.xcc.types.XSInteger;
+import com.marklogic.xcc.types.XdmVariable;
 import com.marklogic.http.HttpChannel;
 
 public class SessionImpl implements Session {
@@ -425,6 +426,10 @@ public class SessionImpl implements Session {
             throwIllegalArg("Request object was not created by this session", getLogger());
         }
         
+        if (((RequestImpl)request).hasSequenceVariables()) {
+            return submitSequenceRequest((RequestImpl)request);
+        }
+
         if (compatibleTxnMode) {
             createTransaction(request);
         }
@@ -432,8 +437,66 @@ public class SessionImpl implements Session {
         return submitRequestInternal((RequestImpl)request);
     }
 
+    public ResultSequence submitPagedRequest(Request request, int pageSize) throws RequestException {
+        assertSessionOpen();
+
+        if ((request.getSession() != this) || (!(request instanceof RequestImpl))) {
+            throwIllegalArg("Request object was not created by this session", getLogger());
+        }
+
+        if (pageSize < 1) {
+            throwIllegalArg("Page size must be at least one: " + pageSize, getLogger());
+        }
+
+        if ((request instanceof ModuleImpl) && ((ModuleImpl)request).isSpawn()) {
+            throwIllegalArg("A spawned module has no result to page through", getLogger());
+        }
+
+        return new PagedResultSequence(this, (RequestImpl)request, pageSize, getLogger());
+    }
+
+    ResultSequence[] submitBatch(RequestImpl request, XdmVariable[][] sets) throws RequestException {
+        assertSessionOpen();
+
+        if (request.getSession() != this) {
+            throwIllegalArg("Request object was not created by this session", getLogger());
+        }
+
+        if ((request instanceof ModuleImpl) && ((ModuleImpl)request).isSpawn()) {
+            throwIllegalState("A spawned module has no results to return for a batch");
+        }
+
+        assertNoExplicitTransaction("Cannot execute a batch in an explicit transaction");
+
+        return new BatchQuery(this, request, sets).submit();
+    }
+
+    // Sequences are rebuilt by a driver query, which passes them to the request in the variable
+    // map of an eval or invoke call
+    private ResultSequence submitSequenceRequest(RequestImpl request) throws RequestException {
+        if ((request instanceof ModuleImpl) && ((ModuleImpl)request).isSpawn()) {
+            throwIllegalState("Sequence variables cannot be passed to a spawned module");
+        }
+
+        assertNoExplicitTransaction("Sequence variables cannot be passed in an explicit transaction");
+
+        return new BatchQuery(this, request, new XdmVariable[][] { request.getVariables() }).submitSingle();
+    }
+
+    /**
+     * Throw an IllegalStateException if this session has an explicit or XA transaction. A driver
+     * query, or a checkpointed insert, commits in a transaction of its own, which a session
+     * transaction could not roll back.
+     */
+    public void assertNoExplicitTransaction(String msg) {
+        if ((txnMode == TransactionMode.UPDATE) || (txnMode == TransactionMode.QUERY) || inXATxn
+                || (getTxnID() != null)) {
+            throwIllegalState(msg);
+        }
+    }
+
     ResultSequence submitRequestInternal(RequestImpl req) throws RequestException {
-        EvalRequestController controller =  new EvalRequestController(req.serverPath(), req.encodedQueryString(getLogger())); 
+        EvalRequestController controller =  new EvalRequestController(req.serverPath()); 
         return controller.runRequest(provider, req, getLogger());
     }
 
@@ -43,6 +43,7 @@ public class StreamingResultSequence extends AbstractResultSequence {
     private final RequestOptions options;
     private final Logger logger;
     private final long startTime;
+    private final long responseLength;
     private ServerConnection connection;
     private boolean closed = false;
     private int cursor = -1;
@@ -51,12 +52,23 @@ public class StreamingResultSequence extends AbstractResultSequence {
 
     public StreamingResultSequence(Request request, ServerConnection connection, MultipartBuffer mbuf,
             RequestOptions options, Logger logger) {
+        this(request, connection, mbuf, options, logger, -1);
+    }
+
+    /**
+     * @param responseLength
+     *            The length of the response body, if the server sent one, or -1. Used to decide
+     *            whether an unfinished result is worth draining when closed.
+     */
+    public StreamingResultSequence(Request request, ServerConnection connection, MultipartBuffer mbuf,
+            RequestOptions options, Logger logger, long responseLength) {
         super(request);
         this.session = (SessionImpl)request.getSession();
         this.connection = connection;
         this.mbuf = mbuf;
         this.options = options;
         this.logger = logger;
+        this.responseLength = responseLength;
 
         startTime = System.currentTimeMillis();
 
@@ -91,8 +103,10 @@ public class StreamingResultSequence extends AbstractResultSequence {
 
         long now = System.currentTimeMillis();
 
+        boolean reusable = false;
+
         try {
-            mbuf.close();
+            reusable = drain();
         } catch (IOException e) {
             String msg = "IOException closing streaming ResultSequence: " + e.getMessage();
 
@@ -100,11 +114,51 @@ public class StreamingResultSequence extends AbstractResultSequence {
 
             throw new StreamingResultException(msg, this, e);
         } finally {
+            if (!reusable) {
+                connection.close();
+            }
+
             connection.provider().returnConnection(connection, logger);
             connection = null;
         }
     }
 
+    // Reads the rest of the response so the connection can be reused, unless there is more of
+    // it left than the drain limit allows. Returns false if the connection must be discarded.
+    private boolean drain() throws IOException {
+        long limit = options.getResultDrainLimit();
+
+        if (limit == 0) {
+            limit = RequestOptions.DEFAULT_RESULT_DRAIN_LIMIT;
+        }
+
+        if (limit < 0) {
+            mbuf.close();
+
+            return true;
+        }
+
+        long remaining = (responseLength < 0) ? -1 : responseLength - mbuf.getTotalBytesRead();
+
+        if (remaining > limit) {
+            if (logger.isLoggable(Level.FINE)) {
+                logger.fine("abandoning connection, about " + remaining + " result bytes unread");
+            }
+
+            mbuf.close(0);
+
+            return false;
+        }
+
+        boolean drained = mbuf.close(limit);
+
+        if (!drained && logger.isLoggable(Level.FINE)) {
+            logger.fine("abandoning connection, more than " + limit + " result bytes unread");
+        }
+
+        return drained;
+    }
+
     public boolean isClosed() {
         return closed;
     }
@@ -192,6 +246,55 @@ public class StreamingResultSequence extends AbstractResultSequence {
         throw new IllegalStateException("Cannot rewind streaming result sequences");
     }
 
+    public int readLongs(long[] dst, int offset, int length) {
+        checkBulkBounds(dst.length, offset, length);
+
+        return readStreaming(BULK_LONGS, dst, offset, length);
+    }
+
+    public int readDoubles(double[] dst, int offset, int length) {
+        checkBulkBounds(dst.length, offset, length);
+
+        return readStreaming(BULK_DOUBLES, dst, offset, length);
+    }
+
+    public int readStrings(String[] dst, int offset, int length) {
+        checkBulkBounds(dst.length, offset, length);
+
+        return readStreaming(BULK_STRINGS, dst, offset, length);
+    }
+
+    private int readStreaming(int kind, Object dst, int offset, int length) {
+        assertNotClosed();
+
+        invalidateCurrentIterator();
+
+        try {
+            int count = readPrimitives(mbuf, options, kind, dst, offset, length, cursor + 1);
+
+            cursor += count;
+            currentItem = null;
+
+            if (bulkMismatch != null) {
+                cursor++;
+                currentItem = bulkMismatch;
+                bulkMismatch = null;
+
+                throw bulkTypeMismatch(kind, currentItem);
+            }
+
+            return count;
+        } catch(RequestException e) {
+            String msg = "RequestException reading values at ResultItem " + (cursor + 1) + ": " + e.getMessage();
+            logger.log(Level.SEVERE, msg, e);
+            throw new StreamingResultException(msg, this, e);
+        } catch(IOException e) {
+            String msg = "IOException reading values at ResultItem " + (cursor + 1) + ": " + e.getMessage();
+            logger.log(Level.SEVERE, msg, e);
+            throw new StreamingResultException(msg, this, e);
+        }
+    }
+
     public ResultSequence toCached() {
         assertNotClosed();
 
@@ -93,7 +93,7 @@ public abstract class AbstractRequestController implements HttpRequestController
 
                         return rs;
                     } catch (RequestPermissionException e) {
-                        if (e.isRetryAdvised()) {
+                        if (e.isRetryAdvised() && isReplayable()) {
                             // avoid unnecessary message construction for this common exception
                             if (logger.isLoggable(Level.FINE)) {
                                 logger.log(Level.FINE, "Retryable permission exception caught.", e);
@@ -166,6 +166,14 @@ public abstract class AbstractRequestController implements HttpRequestController
                 }
             }
 
+            if (!isReplayable()) {
+                if (logger.isLoggable(Level.FINE)) {
+                    logger.fine("request cannot be sent again, not retrying");
+                }
+
+                throw re;
+            }
+
             if (session.getTxnID() == null && session.getTransactionMode() != null &&
                !session.getTransactionMode().isRetryable()) {
                 if(re != null && 
@@ -224,6 +232,14 @@ public abstract class AbstractRequestController implements HttpRequestController
 
     protected abstract long interTryDelay(long delay, int currentTry);
 
+    /**
+     * @return false once the request has been written in a way that cannot be repeated, so that
+     *         a failed try is not retried. The default is true.
+     */
+    protected boolean isReplayable() {
+        return true;
+    }
+
     private void sleepFor(long millis) {
         if (dontSleep || (millis <= 0))
             return;
@@ -269,7 +285,7 @@ public abstract class AbstractRequestController implements HttpRequestController
         http.setRequestHeader("Accept", session.getAcceptedContentTypes());
         
         if (HttpChannel.isUseHTTP()) {
-            ConnectionProvider cp = contentSource.getConnectionProvider();
+            ConnectionProvider cp = session.getProvider();
             http.setRequestHeader("Host", cp.getHostName() + ":" + cp.getPort());
         }
 
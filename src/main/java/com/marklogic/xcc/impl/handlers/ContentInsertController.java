@@ -20,6 +20,7 @@ import java.io.InputStream;
 import java.math.BigInteger;
 import java.net.HttpURLConnection;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.LinkedList;
@@ -29,6 +30,7 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import com.marklogic.http.HttpChannel;
+import com.marklogic.io.ByteBufferInputStream;
 import com.marklogic.io.IOHelper;
 import com.marklogic.xcc.Content;
 import com.marklogic.xcc.ContentCreateOptions;
@@ -43,6 +45,7 @@ import com.marklogic.xcc.Session.TransactionMode;
 import com.marklogic.xcc.exceptions.ContentInsertException;
 import com.marklogic.xcc.exceptions.RequestException;
 import com.marklogic.xcc.exceptions.RequestServerException;
+import com.marklogic.xcc.impl.FileRegionContent;
 import com.marklogic.xcc.impl.RequestImpl;
 import com.marklogic.xcc.impl.SessionImpl;
 import com.marklogic.xcc.spi.ServerConnection;
@@ -106,6 +109,24 @@ public class ContentInsertController extends AbstractRequestController {
         
         logger.fine("beginning content insert dialog, " + remaining.size() + " documents queued");
 
+        int window = Math.max(options.getInsertWindowSize(), 1);
+
+        if (window > 1) {
+            pipelinedDialog(connection, request, options, remaining, window, logger);
+        } else {
+            serialDialog(connection, request, options, remaining, logger);
+        }
+
+        closeContent(processedContent);
+
+        logger.fine("finished content insert dialog, " + contents.length + " documents successfully inserted");
+
+        return null;
+    }
+
+    // Each document is sent once the response to the one before it has been read
+    private void serialDialog(ServerConnection connection, Request request, RequestOptions options,
+            LinkedList<ContentDecorator> remaining, Logger logger) throws RequestException, IOException {
         HttpChannel http = new HttpChannel(connection.channel(), "PUT", "/", 0, options.getTimeoutMillis(), logger);
  
         while (remaining.size() > 0) {
@@ -115,69 +136,165 @@ public class ContentInsertController extends AbstractRequestController {
             ContentDecorator content = remaining.remove(0);
             boolean commit = remaining.size() == 0;
 
-            if (logger.isLoggable(Level.FINE)) {
-                if (content.isEntity()) {
-                    logger.fine("processing entity '" + content.getLocation() + "' for document '" + content.getUri()
-                            + "'");
-                } else {
-                    logger.fine("processing '" + content.getUri() + "'");
-                }
-            }
+            logProcessing(content, logger);
             resetHttpChannel(http, request, options, content, commit, logger);
 
             issueRequest(http, content, commit, logger);
 
-            int code = http.getResponseCode();
-            
-            SessionImpl session = (SessionImpl)request.getSession();
-            session.setServerVersion(http.getServerVersion());
-            
-            if (!session.readCookieValues(http)) {
-                String version = session.getServerVersion();
-                throw new RequestServerException("Incompatible server version " 
-                    + version == null ? "" : version + 
-                    ".  Make sure to set xcc.txn.compatible to true", request);
+            ContentDecorator entityContent = readResponse(http, connection, request, content, logger);
+
+            if (!content.isEntity()) {
+                processedContent.add(content);
+            }
+            if (entityContent != null) {
+                queueEntity(remaining, entityContent, logger);
             }
-            
-            ContentDecorator entityContent = null;
-            
-            try {
-                ResponseHandler handler = findHandler(code);
-                entityContent = (ContentDecorator)handler.handleResponse(http, code, request, content, logger);
-            } catch (RequestServerException e) {
-                if (collectErrors) {
-                    if (errorList == null) {
-                        errorList = new ArrayList<RequestException>();
+        }
+    }
+
+    // Up to window documents are sent before their responses are read, with a second
+    // HttpChannel on the connection reading the responses in order
+    private void pipelinedDialog(ServerConnection connection, Request request, RequestOptions options,
+            LinkedList<ContentDecorator> remaining, int window, Logger logger) throws RequestException,
+            IOException {
+        HttpChannel http = new HttpChannel(connection.channel(), "PUT", "/", 0, options.getTimeoutMillis(), logger);
+        HttpChannel responses = new HttpChannel(connection.channel(), "PUT", "/", 0, options.getTimeoutMillis(),
+                logger);
+        LinkedList<ContentDecorator> unacknowledged = new LinkedList<ContentDecorator>();
+        boolean finished = false;
+
+        try {
+            while ((remaining.size() > 0) || (unacknowledged.size() > 0)) {
+                if (mayPipeline(remaining, unacknowledged, window)) {
+                    ContentDecorator content = remaining.removeFirst();
+                    boolean commit = remaining.size() == 0;
+
+                    logProcessing(content, logger);
+                    resetHttpChannel(http, request, options, content, commit, logger);
+
+                    issueRequest(http, content, commit, logger);
+                    http.sendRequest();
+
+                    unacknowledged.add(content);
+
+                    // Recorded as soon as it is sent, so that a restart rewinds it
+                    if (!content.isEntity()) {
+                        processedContent.add(content);
                     }
-                    errorList.add(new ContentInsertException(e.getMessage(), 
-                            e.getRequest(), content.content, e));
-                } else {
-                    throw e;
+
+                    continue;
                 }
-            } finally {
-                if (connection.isOpen()) {
-                    setConnectionTimeout(connection, http);
+
+                ContentDecorator content = unacknowledged.removeFirst();
+
+                if (logger.isLoggable(Level.FINE))
+                    logger.fine("reading response for '" + content.getUri() + "', " + unacknowledged.size()
+                            + " more outstanding");
+
+                responses.reset("PUT", "/");
+                responses.suppressHeaders();
+
+                ContentDecorator entityContent = readResponse(responses, connection, request, content, logger);
+
+                if (entityContent != null) {
+                    queueEntity(remaining, entityContent, logger);
                 }
             }
 
-            if (!content.isEntity()) {
-                processedContent.add(content);
+            finished = true;
+        } finally {
+            // Responses left unread would be taken for those of the connection's next request
+            if (!finished && (unacknowledged.size() > 0) && connection.isOpen()) {
+                logger.fine("closing connection with " + unacknowledged.size() + " insert responses unread");
+                connection.close();
             }
-            if (entityContent != null) {
-                if (logger.isLoggable(Level.FINE)) {
-                    logger.fine("queueing entity content for '" + entityContent.getUri() + "', location: "
-                            + entityContent.getLocation());
-                }
+        }
+    }
+
+    // The server may ask for a document's entities before it responds, and expects them next.
+    // The last document is the only one sent without nocommit, so it waits until every
+    // earlier response has been read; a failure among those then never reaches a commit.
+    private boolean mayPipeline(LinkedList<ContentDecorator> remaining, LinkedList<ContentDecorator> unacknowledged,
+            int window) {
+        if (remaining.size() == 0) {
+            return false;
+        }
+
+        if (unacknowledged.size() == 0) {
+            return true;
+        }
+
+        if (remaining.size() == 1) {
+            return false;
+        }
 
-                remaining.addFirst(entityContent);
+        return (unacknowledged.size() < window) && !resolvesEntities(remaining.getFirst())
+                && !resolvesEntities(unacknowledged.getLast());
+    }
+
+    private boolean resolvesEntities(ContentDecorator content) {
+        ContentCreateOptions options = content.getCreateOptions();
+
+        return content.isEntity() || ((options != null) && options.getResolveEntities());
+    }
+
+    private void logProcessing(ContentDecorator content, Logger logger) {
+        if (logger.isLoggable(Level.FINE)) {
+            if (content.isEntity()) {
+                logger.fine("processing entity '" + content.getLocation() + "' for document '" + content.getUri()
+                        + "'");
+            } else {
+                logger.fine("processing '" + content.getUri() + "'");
             }
         }
+    }
 
-        closeContent(processedContent);
+    private void queueEntity(LinkedList<ContentDecorator> remaining, ContentDecorator entityContent, Logger logger) {
+        if (logger.isLoggable(Level.FINE)) {
+            logger.fine("queueing entity content for '" + entityContent.getUri() + "', location: "
+                    + entityContent.getLocation());
+        }
 
-        logger.fine("finished content insert dialog, " + contents.length + " documents successfully inserted");
+        remaining.addFirst(entityContent);
+    }
 
-        return null;
+    // Returns the entity the server asked for, if it did
+    private ContentDecorator readResponse(HttpChannel http, ServerConnection connection, Request request,
+            ContentDecorator content, Logger logger) throws RequestException, IOException {
+        int code = http.getResponseCode();
+        
+        SessionImpl session = (SessionImpl)request.getSession();
+        session.setServerVersion(http.getServerVersion());
+        
+        if (!session.readCookieValues(http)) {
+            String version = session.getServerVersion();
+            throw new RequestServerException("Incompatible server version " 
+                + version == null ? "" : version + 
+                ".  Make sure to set xcc.txn.compatible to true", request);
+        }
+        
+        ContentDecorator entityContent = null;
+        
+        try {
+            ResponseHandler handler = findHandler(code);
+            entityContent = (ContentDecorator)handler.handleResponse(http, code, request, content, logger);
+        } catch (RequestServerException e) {
+            if (collectErrors) {
+                if (errorList == null) {
+                    errorList = new ArrayList<RequestException>();
+                }
+                errorList.add(new ContentInsertException(e.getMessage(), 
+                        e.getRequest(), content.content, e));
+            } else {
+                throw e;
+            }
+        } finally {
+            if (connection.isOpen()) {
+                setConnectionTimeout(connection, http);
+            }
+        }
+
+        return entityContent;
     }
 
     // --------------------------------------------------------
@@ -240,16 +357,40 @@ public class ContentInsertController extends AbstractRequestController {
             }
         }
 
+        if (content.isEntity()) {
+            http.suppressHeaders();
+        }
+
+        FileRegionContent region = http.isFileTransferSupported() ? content.getFileRegion() : null;
+
+        if (region != null) {
+            transferFileRegion(http, region, mayHaveBOM(content), logger);
+        } else {
+            sendDataStream(http, content, logger);
+        }
+
+        writeChunkHeader(http, (commit) ? COMMIT : NO_COMMIT, 0, logger);
+
+        if (logger.isLoggable(Level.FINE)) {
+            logger.fine("finished sending content: commit=" + commit);
+        }
+    }
+
+    private void sendDataStream(HttpChannel http, ContentDecorator content, Logger logger) throws IOException {
+        InputStream inStream = content.openDataStream();
+
+        if (inStream instanceof ByteBufferInputStream) {
+            writeDataBuffer(http, ((ByteBufferInputStream)inStream).getBuffer(), mayHaveBOM(content), logger);
+            inStream.close();
+
+            return;
+        }
+
         ByteBuffer dataBuffer = allocDataBuffer(content);
         byte[] dataBytes = dataBuffer.array();
-        InputStream inStream = content.openDataStream();
         boolean checkBOM = mayHaveBOM(content);
         int rc;
 
-        if (content.isEntity()) {
-            http.suppressHeaders();
-        }
-
         while ((rc = inStream.read(dataBytes)) > 0) {
             dataBuffer.clear();
             dataBuffer.limit(rc);
@@ -276,11 +417,77 @@ public class ContentInsertController extends AbstractRequestController {
         }
 
         inStream.close();
+    }
 
-        writeChunkHeader(http, (commit) ? COMMIT : NO_COMMIT, 0, logger);
+    // The data is already in a buffer, perhaps a direct or mapped one, so it is written from there
+    private void writeDataBuffer(HttpChannel http, ByteBuffer data, boolean checkBOM, Logger logger)
+            throws IOException {
+        if (checkBOM && (data.remaining() >= 3) && hasBOM(data)) {
+            data.position(data.position() + 3);
+            logger.finest("suppressed UTF-8 BOM");
+        }
 
-        if (logger.isLoggable(Level.FINE)) {
-            logger.fine("finished sending content: commit=" + commit);
+        while (data.hasRemaining()) {
+            int count = Math.min(data.remaining(), MAX_BUFFER_SIZE);
+            ByteBuffer chunk = data.duplicate();
+
+            chunk.limit(chunk.position() + count);
+
+            writeChunkHeader(http, DATA_CHUNK, count, logger);
+
+            if (logger.isLoggable(Level.FINEST))
+                logger.finest("writing " + count + " bytes of data from buffer");
+
+            http.write(chunk);
+            if (HttpChannel.isUseHTTP()) {
+                http.write("\r\n".getBytes());
+            }
+
+            data.position(data.position() + count);
+        }
+    }
+
+    // The file's data goes straight to the socket, in chunks no bigger than those sent from a stream
+    private void transferFileRegion(HttpChannel http, FileRegionContent region, boolean checkBOM, Logger logger)
+            throws IOException {
+        FileChannel file = region.openFileChannel();
+
+        try {
+            long position = region.getFileOffset();
+            long remaining = region.size();
+
+            if (checkBOM && (remaining >= 3)) {
+                ByteBuffer bom = ByteBuffer.allocate(3);
+
+                while (bom.hasRemaining() && (file.read(bom, position + bom.position()) > 0)) {
+                    // read the first three bytes
+                }
+
+                if (!bom.hasRemaining() && hasBOM(bom.array())) {
+                    position += 3;
+                    remaining -= 3;
+                    logger.finest("suppressed UTF-8 BOM");
+                }
+            }
+
+            while (remaining > 0) {
+                int count = (int)Math.min(remaining, MAX_BUFFER_SIZE);
+
+                writeChunkHeader(http, DATA_CHUNK, count, logger);
+
+                if (logger.isLoggable(Level.FINEST))
+                    logger.finest("transferring " + count + " bytes of data from file");
+
+                http.transferFrom(file, position, count);
+                if (HttpChannel.isUseHTTP()) {
+                    http.write("\r\n".getBytes());
+                }
+
+                position += count;
+                remaining -= count;
+            }
+        } finally {
+            file.close();
         }
     }
 
@@ -298,16 +505,34 @@ public class ContentInsertController extends AbstractRequestController {
         return ((bytes[0] & 0xff) == 0xef) && ((bytes[1] & 0xff) == 0xbb) && ((bytes[2] & 0xff) == 0xbf);
     }
 
+    private boolean hasBOM(ByteBuffer buffer) {
+        int pos = buffer.position();
+
+        return ((buffer.get(pos) & 0xff) == 0xef) && ((buffer.get(pos + 1) & 0xff) == 0xbb)
+                && ((buffer.get(pos + 2) & 0xff) == 0xbf);
+    }
+
     // ------------------------------------------------------------
 
-    private void assertRestartable(LinkedList<Content> processedContent, Request request) throws ContentInsertException {
+    /**
+     * Make sent content ready to be sent again, by rewinding it. Content that has not been read
+     * since this controller wrapped it is skipped. The list is emptied.
+     *
+     * @throws ContentInsertException
+     *             If any content cannot be rewound.
+     */
+    public static void assertRestartable(LinkedList<? extends Content> processedContent, Request request)
+            throws ContentInsertException {
         while (processedContent.size() > 0) {
-            ContentDecorator content = (ContentDecorator)processedContent.removeFirst();
+            Content content = processedContent.removeFirst();
 
-            if (content.isPristine()) {
+            if ((content instanceof ContentDecorator) && ((ContentDecorator)content).isPristine()) {
                 continue;
             }
 
+            Content original = (content instanceof ContentDecorator) ? ((ContentDecorator)content).getOriginal()
+                    : content;
+
             if (content.isRewindable()) {
                 try {
                     // TODO: write a test case to verify rewinds
@@ -318,7 +543,7 @@ public class ContentInsertController extends AbstractRequestController {
 
                     // TODO: write a test case for this
                     throw new ContentInsertException("Cannot auto-restart insert, error rewinding content: "
-                            + content.getUri(), request, content.getOriginal(), e);
+                            + content.getUri(), request, original, e);
                 }
 
                 continue;
@@ -327,7 +552,7 @@ public class ContentInsertController extends AbstractRequestController {
             processedContent.clear();
 
             throw new ContentInsertException("Cannot auto-restart insert, non-rewindable content already processed: "
-                    + content.getUri(), request, content.getOriginal());
+                    + content.getUri(), request, original);
         }
     }
 
@@ -613,6 +838,17 @@ public class ContentInsertController extends AbstractRequestController {
         public Content getOriginal() {
             return content;
         }
+
+        // The content, if its data can be sent straight from a file
+        FileRegionContent getFileRegion() {
+            if (isEntity() || !(content instanceof FileRegionContent) || (content.size() < 0)) {
+                return null;
+            }
+
+            pristine = false;
+
+            return (FileRegionContent)content;
+        }
     }
 
     public List<RequestException> getErrors() {
@@ -15,7 +15,9 @@
  */
 package com.marklogic.xcc.impl.handlers;
 
+import java.io.FilterOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.net.HttpURLConnection;
 import java.util.HashMap;
 import java.util.Map;
@@ -23,11 +25,13 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import com.marklogic.http.HttpChannel;
+import com.marklogic.io.IOHelper;
 import com.marklogic.xcc.Request;
 import com.marklogic.xcc.RequestOptions;
 import com.marklogic.xcc.ResultSequence;
 import com.marklogic.xcc.exceptions.RequestException;
 import com.marklogic.xcc.exceptions.RequestServerException;
+import com.marklogic.xcc.impl.RequestImpl;
 import com.marklogic.xcc.impl.SessionImpl;
 import com.marklogic.xcc.spi.ServerConnection;
 
@@ -44,14 +48,37 @@ public class EvalRequestController extends AbstractRequestController {
         addHandler(handlers, HttpURLConnection.HTTP_OK, new GoodQueryResponseHandler());
     }
 
+    // A body up to the size of a default HttpChannel buffer is encoded once and kept
+    private static final int MAX_BUFFERED_BODY_SIZE = 64 * 1024;
+    // DAL do not dump extrodinary long queries
+    private static final int MAX_LOGGED_QUERY_SIZE = 1024 * 10;
+
     // --------------------------------------------------------
 
-    protected final String body;
+    protected final byte[] body;
     private final String path;
+    private boolean replayable = true;
 
     // --------------------------------------------------------
 
+    /**
+     * A controller that encodes the request it runs straight into the HTTP channel as it is
+     * sent, rather than taking a ready-made body.
+     */
+    public EvalRequestController(String path) {
+        this(path, (byte[])null);
+    }
+
     public EvalRequestController(String path, String body) {
+        this(path, IOHelper.getUtf8Bytes(body));
+    }
+
+    /**
+     * @param body
+     *            The form-encoded request body, as UTF-8 bytes, or null to encode the request
+     *            when it is sent.
+     */
+    public EvalRequestController(String path, byte[] body) {
         super(handlers);
 
         this.path = path;
@@ -66,12 +93,42 @@ public class EvalRequestController extends AbstractRequestController {
             Logger logger) throws IOException, RequestException {
         SessionImpl session = (SessionImpl)request.getSession();
 
-        //DAL: convert to byte array here so we get the right size for the buffer
-        byte[] bodyBytes = body.getBytes("UTF-8");
+        HttpChannel http;
+
+        if (body != null) {
+            http = buildChannel(connection, path, session, options, body.length, logger);
+
+            issueRequest(http, body, logger);
+        } else {
+            RequestImpl.EncodedBody encodedBody = ((RequestImpl)request).encodedBody(logger);
+            byte[] encoded = encodedBody.toByteArray(MAX_BUFFERED_BODY_SIZE);
+
+            if (encoded != null) {
+                http = buildChannel(connection, path, session, options, encoded.length, logger);
+
+                issueRequest(http, encoded, logger);
+            } else if (encodedBody.isReplayable()) {
+                // Too long to keep, so it is encoded once to count it and again as it is sent
+                long length = encodedBody.length();
+
+                http = buildChannel(connection, path, session, options, 0, logger);
 
-        HttpChannel http = buildChannel(connection, path, session, options, bodyBytes.length, logger);
+                // With the length known up front, a body larger than the buffer can be sent in pieces
+                // without closing the output side of the connection to mark its end
+                http.setRequestContentLength(length);
+                http.setRequestHeader("Connection", "keep-alive");
 
-        issueRequest(http, bodyBytes , logger);
+                issueRequest(http, encodedBody, logger);
+            } else {
+                // A value that can only be read once is streamed without knowing the length. If the
+                // body fits in the buffer the length is set when it is flushed, otherwise the output
+                // side of the connection is closed to mark its end
+                http = buildChannel(connection, path, session, options, 0, logger);
+                replayable = false;
+
+                issueRequest(http, encodedBody, logger);
+            }
+        }
 
         int code = http.getResponseCode();
 
@@ -108,6 +165,12 @@ public class EvalRequestController extends AbstractRequestController {
         return delay;
     }
 
+    // Once a value that can only be read once has been sent, a retry would have nothing to send
+    @Override
+    protected boolean isReplayable() {
+        return replayable;
+    }
+
     // --------------------------------------------------------
 
     private HttpChannel buildChannel(ServerConnection connection, String path, SessionImpl session,
@@ -133,17 +196,73 @@ public class EvalRequestController extends AbstractRequestController {
             Logger logger
      ) throws IOException {
         if (logger.isLoggable(Level.FINE)) {
-           // DAL do not dump extrodinary long queries
-            final int kMAX_QUERY_SIZE = 1024*10;
-            int len = encodedQueryBytes.length;
-            if( len < kMAX_QUERY_SIZE )
-               logger.fine("encoded query: " + new String(encodedQueryBytes,"UTF-8") );
-            else 
-                logger.fine("encoded query [" + ( len - kMAX_QUERY_SIZE ) + " bytes truncated]: " 
-                     + new String( encodedQueryBytes , 0 ,kMAX_QUERY_SIZE , "UTF-8" ));
+            logQuery(encodedQueryBytes, Math.min(encodedQueryBytes.length, MAX_LOGGED_QUERY_SIZE),
+                    encodedQueryBytes.length, logger);
         }
 
         logger.fine("writing query to HttpChannel");
         http.write(encodedQueryBytes);
     }
+
+    // Logged after it is sent, from a copy of its start taken on the way through
+    private void issueRequest(HttpChannel http, RequestImpl.EncodedBody body, Logger logger) throws IOException {
+        logger.fine("writing streamed query to HttpChannel");
+
+        if (!logger.isLoggable(Level.FINE)) {
+            body.writeTo(http.getRequestStream());
+
+            return;
+        }
+
+        PrefixCopyOutputStream out = new PrefixCopyOutputStream(http.getRequestStream(), MAX_LOGGED_QUERY_SIZE);
+
+        body.writeTo(out);
+
+        logQuery(out.prefix, out.prefixLength, out.length, logger);
+    }
+
+    private void logQuery(byte[] bytes, int logged, long length, Logger logger) throws IOException {
+        if (logged == length) {
+            logger.fine("encoded query: " + new String(bytes, 0, logged, "UTF-8"));
+        } else {
+            logger.fine("encoded query [" + (length - logged) + " bytes truncated]: "
+                    + new String(bytes, 0, logged, "UTF-8"));
+        }
+    }
+
+    /**
+     * Passes everything through, keeping a copy of the first so many bytes.
+     */
+    private static class PrefixCopyOutputStream extends FilterOutputStream {
+        private final byte[] prefix;
+        private int prefixLength = 0;
+        private long length = 0;
+
+        PrefixCopyOutputStream(OutputStream out, int prefixSize) {
+            super(out);
+
+            prefix = new byte[prefixSize];
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (prefixLength < prefix.length) {
+                prefix[prefixLength++] = (byte)b;
+            }
+
+            length++;
+            out.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            int copy = Math.min(len, prefix.length - prefixLength);
+
+            System.arraycopy(b, off, prefix, prefixLength, copy);
+
+            prefixLength += copy;
+            length += len;
+            out.write(b, off, len);
+        }
+    }
 }
@@ -16,6 +16,11 @@
 package com.marklogic.xcc.impl.handlers;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
 
 import com.marklogic.http.BMBoundaryPartSplitter;
@@ -24,6 +29,7 @@ import com.marklogic.http.HttpHeaders;
 import com.marklogic.http.MultipartBuffer;
 import com.marklogic.http.MultipartSplitter;
 import com.marklogic.http.NullPartSplitter;
+import com.marklogic.io.ReadAheadInputStream;
 import com.marklogic.xcc.Request;
 import com.marklogic.xcc.RequestOptions;
 import com.marklogic.xcc.impl.CachedResultSequence;
@@ -34,12 +40,26 @@ import com.marklogic.xcc.spi.ServerConnection;
 import com.marklogic.xcc.exceptions.RequestException;
 
 public class GoodQueryResponseHandler implements ResponseHandler {
+    // Unbounded, unlike the result decoding pool, since each read-ahead holds its thread for as
+    // long as its result is open, and one waiting for a thread would never start
+    private static final ExecutorService readAheadPool = Executors.newCachedThreadPool(new ThreadFactory() {
+        private final AtomicInteger count = new AtomicInteger();
+
+        public Thread newThread(Runnable task) {
+            Thread thread = new Thread(task, "XCC result read-ahead " + count.incrementAndGet());
+
+            thread.setDaemon(true);
+
+            return thread;
+        }
+    });
+
     public Object handleResponse(HttpChannel http, int responseCode, Request request, Object attachment, Logger logger)
             throws RequestException, IOException {
         RequestOptions options = request.getEffectiveOptions();
         String boundary = http.getResponseContentBoundary();
         MultipartSplitter splitter = (boundary == null) ? (MultipartSplitter)new NullPartSplitter()
-                : new BMBoundaryPartSplitter(http.getResponseStream(), boundary.getBytes(), options
+                : new BMBoundaryPartSplitter(responseStream(http, options), boundary.getBytes(), options
                         .getResultBufferSize(), logger);
         MultipartBuffer mbuf = new MultipartBuffer(splitter);
 
@@ -50,6 +70,16 @@ public class GoodQueryResponseHandler implements ResponseHandler {
 
         logger.fine("ResultSequence is streaming");
         return new StreamingResultSequence(request, (ServerConnection)attachment, mbuf,
-                options, logger);
+                options, logger, http.getResponseContentLength());
+    }
+
+    private InputStream responseStream(HttpChannel http, RequestOptions options) throws IOException {
+        InputStream stream = http.getResponseStream();
+
+        if (options.getCacheResult() || (options.getResultReadAheadSize() <= 0)) {
+            return stream;
+        }
+
+        return new ReadAheadInputStream(stream, options.getResultReadAheadSize(), readAheadPool);
     }
 }
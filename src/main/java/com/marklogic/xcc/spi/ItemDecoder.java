@@ -0,0 +1,85 @@
+/*
+ * Copyright 2003-2016 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.xcc.spi;
+
+import java.io.IOException;
+
+import com.marklogic.http.MultipartBuffer;
+import com.marklogic.xcc.RequestOptions;
+import com.marklogic.xcc.types.XdmItem;
+
+/**
+ * <p>
+ * An ItemDecoder turns the body of a result part into an {@link XdmItem}. Decoders are selected by
+ * the primitive type name the server sends with each item (the <code>x-primitive</code> header
+ * value, such as "integer", "dateTime", "map" or "element()").
+ * </p>
+ * <p>
+ * XCC has a built-in decoder for each primitive it understands. An application may replace any of
+ * them, or add decoders for additional primitives, by calling
+ * {@link RequestOptions#setItemDecoder(String, ItemDecoder)}. This makes it possible, for example,
+ * to turn JavaScript "map" or "object" values directly into application types rather than going
+ * through {@link com.marklogic.xcc.types.JSObject}.
+ * </p>
+ * <p>
+ * Decoders are shared and may be invoked concurrently, so implementations should be stateless.
+ * </p>
+ */
+public abstract class ItemDecoder {
+    /**
+     * Decode an item whose body has already been read as a String. This is the form used for items
+     * that arrive packed in a compact sequence part.
+     * 
+     * @param primitive
+     *            The primitive type name of the item.
+     * @param body
+     *            The lexical value of the item.
+     * @param options
+     *            The effective {@link RequestOptions} of the request. The timezone and locale are
+     *            always set.
+     * @return A new {@link XdmItem}.
+     * @throws IOException
+     *             If the body cannot be decoded as the given primitive.
+     */
+    public abstract XdmItem decode(String primitive, String body, RequestOptions options) throws IOException;
+
+    /**
+     * <p>
+     * Decode an item that arrived in its own part. The default implementation reads the part body
+     * into a String and calls {@link #decode(String, String, RequestOptions)}.
+     * </p>
+     * <p>
+     * Decoders for large values should override this method and consume
+     * {@link MultipartBuffer#getBodyStream()} directly. When
+     * {@link RequestOptions#getCacheResult()} is false the stream must not be read ahead of the
+     * caller, it will be invalidated when the result sequence advances.
+     * </p>
+     * 
+     * @param primitive
+     *            The primitive type name of the item.
+     * @param part
+     *            The {@link MultipartBuffer}, positioned on the part holding the item. Part headers
+     *            may be read with {@link MultipartBuffer#getHeader(String)}.
+     * @param options
+     *            The effective {@link RequestOptions} of the request.
+     * @return A new {@link XdmItem}.
+     * @throws IOException
+     *             If the part cannot be read or decoded.
+     */
+    public XdmItem decode(String primitive, MultipartBuffer part, RequestOptions options) throws IOException {
+        return decode(primitive, part.getBodyAsString(), options);
+    }
+}
@@ -28,7 +28,8 @@ import com.fasterxml.jackson.databind.ObjectMapper;
  */
 public interface JsonItem extends XdmItem {
     /**
-     * @return The value of this item as a JsonNode object.
+     * @return The value of this item as a JsonNode object, built with the shared
+     *         {@link JsonMapping#getObjectMapper() ObjectMapper}.
      */
     JsonNode asJsonNode() 
     throws JsonParseException, JsonMappingException, IOException;
@@ -38,4 +39,45 @@ public interface JsonItem extends XdmItem {
      */
     JsonNode asJsonNode(ObjectMapper mapper)
     throws JsonParseException, JsonMappingException, IOException;
+
+    /**
+     * <p>
+     * Get a streaming parser over the value of this item, created by the shared
+     * {@link JsonMapping#getObjectMapper() ObjectMapper}. For an item of a streaming result the
+     * parser reads the result part directly, so large values can be processed incrementally
+     * without building a tree or a String. As with {@link XdmItem#asInputStream()}, that can only
+     * be done once.
+     * </p>
+     * <p>
+     * The caller should close the parser when done with it.
+     * </p>
+     * 
+     * @return A JsonParser positioned before the first token of the value.
+     */
+    JsonParser asJsonParser() throws IOException;
+
+    /**
+     * Get a streaming parser over the value of this item, created by the given mapper, which is
+     * also the codec of the parser. See {@link #asJsonParser()}.
+     * 
+     * @return A JsonParser positioned before the first token of the value.
+     */
+    JsonParser asJsonParser(ObjectMapper mapper) throws IOException;
+
+    /**
+     * Bind the value of this item to an instance of the given class with the shared
+     * {@link JsonMapping#getObjectMapper() ObjectMapper}, without building an intermediate tree.
+     * 
+     * @return A new instance of valueType.
+     */
+    <T> T asObject(Class<T> valueType) throws JsonParseException, JsonMappingException, IOException;
+
+    /**
+     * Bind the value of this item to an instance of the given class with the given mapper,
+     * without building an intermediate tree.
+     * 
+     * @return A new instance of valueType.
+     */
+    <T> T asObject(Class<T> valueType, ObjectMapper mapper)
+    throws JsonParseException, JsonMappingException, IOException;
 }
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2003-2016 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.xcc.types;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * <p>
+ * Holds the Jackson {@link ObjectMapper} used by {@link JsonItem} methods that are not given one
+ * explicitly. An ObjectMapper is expensive to create but safe to share once configured, so one
+ * instance serves the whole JVM.
+ * </p>
+ * <p>
+ * To customize the binding of JSON result items, for example to register modules or change
+ * deserialization features, configure a mapper fully and then pass it to
+ * {@link #setObjectMapper(ObjectMapper)}, before any results are read with it.
+ * </p>
+ */
+public final class JsonMapping {
+    private static volatile ObjectMapper objectMapper = new ObjectMapper();
+
+    private JsonMapping() {
+    }
+
+    /**
+     * @return The shared ObjectMapper.
+     */
+    public static ObjectMapper getObjectMapper() {
+        return objectMapper;
+    }
+
+    /**
+     * Replace the shared ObjectMapper.
+     * 
+     * @param mapper
+     *            A fully configured ObjectMapper, or null to revert to a default one.
+     */
+    public static void setObjectMapper(ObjectMapper mapper) {
+        objectMapper = (mapper == null) ? new ObjectMapper() : mapper;
+    }
+}
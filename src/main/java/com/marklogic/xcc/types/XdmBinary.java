@@ -15,14 +15,18 @@
  */
 package com.marklogic.xcc.types;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
 /**
  * An XDM-like binary() value (binary() is a MarkLogic extension).
  */
 public interface XdmBinary extends XdmNode {
     /**
      * Buffers the binary() item from the server and converts it to a Java byte array. This method
-     * may be invoked repeatedly. On subsequent invocations it will return the same array
-     * constructed by the first invocation.<br>
+     * may be invoked repeatedly. Each invocation returns a new copy of the buffered bytes, use
+     * {@link #asByteBuffer()} to read them without copying.<br>
      * <strong>NOTE:</strong> If the binary() item is large, it is possible that an OutOfMemory
      * error could result when invoking this method, which could result in your program crashing. If
      * you need to handle arbitrarily large binary() items, use the {@link #asInputStream()} method.
@@ -34,4 +38,32 @@ public interface XdmBinary extends XdmNode {
      * @see #isCached()
      */
     byte[] asBinaryData();
+
+    /**
+     * Buffers the binary() item from the server, as {@link #asBinaryData()} does, and returns a
+     * read-only view of the buffered bytes. Unlike {@link #asBinaryData()}, the bytes are not
+     * copied, so this method may be called repeatedly at no extra cost. Each call returns a new
+     * view positioned at the start of the data.
+     * 
+     * @return A read-only {@link ByteBuffer} holding this item.
+     * @throws IllegalStateException
+     *             If called after the InputStream has already been consumed.
+     */
+    ByteBuffer asByteBuffer();
+
+    /**
+     * Writes the binary() item to the given channel, typically a {@link java.nio.channels.FileChannel}
+     * or a socket channel. If the item is cached, the buffered bytes are written. Otherwise the
+     * data is passed from the result stream to the channel without being buffered, which consumes
+     * the item in the same way as reading the {@link #asInputStream()} stream does.
+     * 
+     * @param channel
+     *            The channel to write to. It is not closed.
+     * @return The number of bytes written.
+     * @throws IOException
+     *             If reading the result or writing to the channel fails.
+     * @throws IllegalStateException
+     *             If called after the InputStream has already been consumed.
+     */
+    long transferTo(WritableByteChannel channel) throws IOException;
 }
@@ -19,8 +19,13 @@ import java.io.IOException;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 
+import org.xml.sax.ContentHandler;
 import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
 
 /**
  * An XQuery value which is an element().
@@ -89,4 +94,54 @@ public interface XdmElement extends XdmNode {
      * @return This item as a W3C document (org.w3c.dom.Document) instance.
      */
     org.w3c.dom.Document asW3cDocument() throws ParserConfigurationException, IOException, SAXException;
+
+    /**
+     * <p>
+     * Returns a StAX reader that parses this element as it is read, without buffering it. For an
+     * item of a streaming {@link com.marklogic.xcc.ResultSequence} the reader pulls directly from
+     * the result, so an element of any size can be scanned in constant memory. As with
+     * {@link #asInputStream()}, that can only be done once. A cached value is parsed from the
+     * buffered String.
+     * </p>
+     * 
+     * @param factory
+     *            The javax.xml.stream.XMLInputFactory to create the reader with. If null, a shared
+     *            default factory is used, which does not read DTDs or external entities.
+     * @return A reader positioned at the start of the element.
+     * @throws IllegalStateException
+     *             If called after the InputStream has already been consumed.
+     * @see #asInputStream()
+     * @see #isCached()
+     */
+    XMLStreamReader asXMLStreamReader(XMLInputFactory factory) throws XMLStreamException;
+
+    /**
+     * This is equivalent to <code>asXMLStreamReader (null)</code>.
+     * 
+     * @return A reader positioned at the start of the element.
+     */
+    XMLStreamReader asXMLStreamReader() throws XMLStreamException;
+
+    /**
+     * Parses this element with the given SAX reader, which must already have its handlers set. Like
+     * {@link #asXMLStreamReader(XMLInputFactory)}, this reads a streaming item directly from the
+     * result, and can only be done once.
+     * 
+     * @param reader
+     *            The org.xml.sax.XMLReader to parse with.
+     * @throws IllegalStateException
+     *             If called after the InputStream has already been consumed.
+     */
+    void parse(XMLReader reader) throws IOException, SAXException;
+
+    /**
+     * Parses this element with a namespace aware SAX parser from the default
+     * javax.xml.parsers.SAXParserFactory, pushing its content to the given handler. External
+     * entities are not read.
+     * 
+     * @param handler
+     *            The org.xml.sax.ContentHandler to receive the parse events.
+     * @see #parse(XMLReader)
+     */
+    void parse(ContentHandler handler) throws ParserConfigurationException, IOException, SAXException;
 }
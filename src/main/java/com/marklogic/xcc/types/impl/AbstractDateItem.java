@@ -15,10 +15,8 @@
  */
 package com.marklogic.xcc.types.impl;
 
-import java.math.BigDecimal;
 import java.text.ParsePosition;
 import java.text.SimpleDateFormat;
-import java.util.Calendar;
 import java.util.Date;
 import java.util.GregorianCalendar;
 import java.util.Locale;
@@ -49,21 +47,35 @@ abstract public class AbstractDateItem extends AbstractStringItem {
     // -----------------------------------------------------------
 
     protected Date dateFromDateString(String str) {
-        return (dateFromString(str, DATE_FMT_STRING, timezone, locale));
+        return (dateFromString(str, LexicalDateParser.DATE, DATE_FMT_STRING, timezone, locale));
     }
 
     protected Date dateFromDateTimeString(String str) {
-        return (dateFromString(str, DATETIME_FMT_STRING, timezone, locale));
+        return (dateFromString(str, LexicalDateParser.DATETIME, DATETIME_FMT_STRING, timezone, locale));
     }
 
     protected Date dateFromTimeString(String str) {
-        return (dateFromString(str, TIME_FMT_STRING, timezone, locale));
+        return (dateFromString(str, LexicalDateParser.TIME, TIME_FMT_STRING, timezone, locale));
     }
 
-    // TODO: fully test Timezone and locale variations
-    private Date dateFromString(String str, String fmt, TimeZone tz, Locale locale) {
+    // A trailing zone designator does not affect the resulting instant, the fields are always
+    // interpreted in the request timezone.  The parse below matches what SimpleDateFormat does.
+    private Date dateFromString(String str, int kind, String fmt, TimeZone tz, Locale locale) {
         String val = str.trim();
 
+        if (LexicalDateParser.isGregorianLocale(locale)) {
+            LexicalDateParser parser = LexicalDateParser.get();
+
+            if (parser.parse(val, kind)) {
+                return new Date(parser.toMillis(tz));
+            }
+        }
+
+        return dateFromStringSlow(val, fmt, tz, locale);
+    }
+
+    // TODO: fully test Timezone and locale variations
+    private Date dateFromStringSlow(String val, String fmt, TimeZone tz, Locale locale) {
         SimpleDateFormat sdf = new SimpleDateFormat(fmt, locale);
         sdf.setTimeZone(tz);
 
@@ -71,7 +83,7 @@ abstract public class AbstractDateItem extends AbstractStringItem {
         Date date = sdf.parse(val, pp);
 
         if (date == null) {
-            throw new IllegalArgumentException("Not a valid date/time string: " + str + " (" + fmt + ")");
+            throw new IllegalArgumentException("Not a valid date/time string: " + val + " (" + fmt + ")");
         }
 
         int millis = 0;
@@ -88,60 +100,59 @@ abstract public class AbstractDateItem extends AbstractStringItem {
             pp.setIndex(end);
         }
 
-        if (pp.getIndex() < val.length()) {
-            if (val.charAt(pp.getIndex()) == 'Z') {
-                tz = TimeZone.getTimeZone("UTC");
-            } else {
-                tz = TimeZone.getTimeZone("GMT" + val.substring(pp.getIndex()));
-            }
-        }
-
-        GregorianCalendar cal = new GregorianCalendar(tz, locale);
-
-        cal.setTime(date);
-        cal.set(Calendar.MILLISECOND, millis);
-        date = cal.getTime();
-
-        return date;
+        return new Date(date.getTime() + millis);
     }
 
-    private static final BigDecimal oneThousand = new BigDecimal("1000");
-
     // package local for unit testing
     static int millisFromFractional(String fraction) {
-        BigDecimal d = new BigDecimal("0." + fraction);
-        d = d.setScale(3, BigDecimal.ROUND_HALF_UP);
-        d = d.multiply(oneThousand);
-
-        return d.intValue();
+        return LexicalDateParser.millisFromFraction(fraction, 0, fraction.length());
     }
 
     // -----------------------------------------------------------
 
     protected GregorianCalendar gCalFromGDayString(String str) {
-        return (gCalFromString(str, GDAY_FMT_STRING, timezone, locale));
+        return (gCalFromString(str, LexicalDateParser.GDAY, GDAY_FMT_STRING, timezone, locale));
     }
 
     protected GregorianCalendar gCalFromGMonthString(String str) {
-        return (gCalFromString(str, GMONTH_FMT_STRING, timezone, locale));
+        return (gCalFromString(str, LexicalDateParser.GMONTH, GMONTH_FMT_STRING, timezone, locale));
     }
 
     protected GregorianCalendar gCalFromGMonthDayString(String str) {
-        return (gCalFromString(str, GMONTHDAY_FMT_STRING, timezone, locale));
+        return (gCalFromString(str, LexicalDateParser.GMONTHDAY, GMONTHDAY_FMT_STRING, timezone, locale));
     }
 
     protected GregorianCalendar gCalFromGYearString(String str) {
-        return (gCalFromString(str, GYEAR_FMT_STRING, timezone, locale));
+        return (gCalFromString(str, LexicalDateParser.GYEAR, GYEAR_FMT_STRING, timezone, locale));
     }
 
     protected GregorianCalendar gCalFromGYearMonthString(String str) {
-        return (gCalFromString(str, GYEARMONTH_FMT_STRING, timezone, locale));
+        return (gCalFromString(str, LexicalDateParser.GYEARMONTH, GYEARMONTH_FMT_STRING, timezone, locale));
     }
 
-    // TODO: Test timezone and locale settings
-    private GregorianCalendar gCalFromString(String str, String fmt, TimeZone tz, Locale locale) {
+    private GregorianCalendar gCalFromString(String str, int kind, String fmt, TimeZone tz, Locale locale) {
         String val = str.trim();
 
+        if (LexicalDateParser.isGregorianLocale(locale)) {
+            LexicalDateParser parser = LexicalDateParser.get();
+
+            if (parser.parse(val, kind)) {
+                long millis = parser.toMillis(tz);
+                int end = parser.getPosition();
+                TimeZone zone = (end < val.length()) ? LexicalDateParser.zoneForSuffix(val.substring(end)) : tz;
+                GregorianCalendar gcal = new GregorianCalendar(zone, locale);
+
+                gcal.setTimeInMillis(millis);
+
+                return gcal;
+            }
+        }
+
+        return gCalFromStringSlow(val, fmt, tz, locale);
+    }
+
+    // TODO: Test timezone and locale settings
+    private GregorianCalendar gCalFromStringSlow(String val, String fmt, TimeZone tz, Locale locale) {
         SimpleDateFormat sdf = new SimpleDateFormat(fmt, locale);
         sdf.setTimeZone(tz);
 
@@ -149,11 +160,11 @@ abstract public class AbstractDateItem extends AbstractStringItem {
         Date d = sdf.parse(val, pp);
 
         if (d == null) {
-            throw new IllegalArgumentException("Not a valid Gregorian string: " + str + " (" + fmt + ")");
+            throw new IllegalArgumentException("Not a valid Gregorian string: " + val + " (" + fmt + ")");
         }
 
         if (pp.getIndex() < val.length()) {
-            tz = TimeZone.getTimeZone("GMT" + val.substring(pp.getIndex()));
+            tz = LexicalDateParser.zoneForSuffix(val.substring(pp.getIndex()));
         }
 
         GregorianCalendar gcal = new GregorianCalendar(tz, locale);
@@ -20,15 +20,29 @@ import com.marklogic.xcc.types.ItemType;
 import com.marklogic.xcc.types.XdmDuration;
 
 abstract public class AbstractDurationItem extends AbstractStringItem {
-    private final XdmDuration value;
+    private volatile XdmDuration value;
 
     public AbstractDurationItem(ItemType type, String value) {
+        this(type, value, true);
+    }
+
+    /**
+     * If validate is false, the value is trusted (it came from the server) and is not parsed until
+     * {@link #asDuration()} is called.
+     */
+    public AbstractDurationItem(ItemType type, String value, boolean validate) {
         super(type, value);
 
-        this.value = new Duration(value);
+        if (validate) {
+            this.value = new Duration(value);
+        }
     }
 
     public XdmDuration asDuration() {
+        if (value == null) {
+            value = new Duration(asString());
+        }
+
         return value;
     }
 }
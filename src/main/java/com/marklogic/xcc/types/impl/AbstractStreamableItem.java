@@ -22,12 +22,14 @@ import java.io.Reader;
 import java.io.StringReader;
 import java.io.UnsupportedEncodingException;
 
+import com.marklogic.io.ByteSource;
 import com.marklogic.io.IOHelper;
 import com.marklogic.xcc.types.ItemType;
 
-public class AbstractStreamableItem extends AbstractItem implements StreamableItem {
+public class AbstractStreamableItem extends AbstractItem implements StreamableItem, StreamedValue {
     protected String stringVal = null;
     protected InputStream stream = null;
+    protected ByteSource source = null;
 
     public AbstractStreamableItem(ItemType type, String stringVal) {
         super(type);
@@ -41,16 +43,28 @@ public class AbstractStreamableItem extends AbstractItem implements StreamableIt
         this.stream = stream;
     }
 
+    /**
+     * @param source
+     *            The UTF-8 bytes of the value. It is read each time the value is streamed, and only
+     *            buffered if {@link #asString()} is called.
+     */
+    public AbstractStreamableItem(ItemType type, ByteSource source) {
+        super(type);
+
+        this.source = source;
+    }
+
     // -------------------------------------------------------------
     // StreamableItem
 
     public boolean isFetchable() {
-        return ((stringVal != null) || (stream != null));
+        return ((stringVal != null) || (stream != null) || (source != null));
     }
 
     // TODO: test this
     public void invalidate() {
         stringVal = null;
+        source = null;
 
         if (stream != null) {
             try {
@@ -71,12 +85,14 @@ public class AbstractStreamableItem extends AbstractItem implements StreamableIt
         return stringVal != null;
     }
 
-    public Reader asReader() {
-        if (stream != null) {
-            InputStream tmp = stream;
+    public ByteSource getValueSource() {
+        return (stringVal == null) ? source : null;
+    }
 
-            stream = null;
+    public Reader asReader() {
+        InputStream tmp = takeStream();
 
+        if (tmp != null) {
             try {
                 return (new InputStreamReader(tmp, "UTF-8"));
             } catch (UnsupportedEncodingException e) {
@@ -92,11 +108,9 @@ public class AbstractStreamableItem extends AbstractItem implements StreamableIt
     }
 
     public InputStream asInputStream() {
-        if (stream != null) {
-            InputStream tmp = stream;
-
-            stream = null;
+        InputStream tmp = takeStream();
 
+        if (tmp != null) {
             return (tmp);
         }
 
@@ -112,18 +126,61 @@ public class AbstractStreamableItem extends AbstractItem implements StreamableIt
             return stringVal;
         }
 
-        if (stream == null) {
+        ByteSource tmpSource = source;
+        InputStream tmp = takeStream();
+
+        if (tmp == null) {
             throw new IllegalStateException("value stream has already been consumed");
         }
 
         try {
-            stringVal = IOHelper.literalStringFromStream(stream);
+            if (tmpSource == null) {
+                stringVal = IOHelper.literalStringFromStream(tmp);
+            } else {
+                try {
+                    stringVal = IOHelper.literalStringFromStream(tmp, tmpSource.length());
+                } finally {
+                    tmp.close();
+                }
+            }
         } catch (IOException e) {
             throw new RuntimeException("Could not buffer value as string", e);
         } finally {
-            stream = null;
+            source = null;
         }
 
         return (stringVal);
     }
+
+    // -------------------------------------------------------------
+
+    /**
+     * A stream of the value's bytes, opened from the source if there is one, otherwise the
+     * stream the value was made from, which can only be taken once.
+     *
+     * @return The stream, or null if the value is only held as a String.
+     */
+    private InputStream takeStream() {
+        if (source != null) {
+            InputStream tmp;
+
+            try {
+                tmp = source.openStream();
+            } catch (IOException e) {
+                throw new RuntimeException("Could not open value source", e);
+            }
+
+            if (!source.isReplayable()) {
+                source = null;
+            }
+
+            return tmp;
+        }
+
+        InputStream tmp = stream;
+
+        stream = null;
+
+        return tmp;
+    }
 }
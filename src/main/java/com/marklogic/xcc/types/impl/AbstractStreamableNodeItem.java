@@ -17,6 +17,7 @@ package com.marklogic.xcc.types.impl;
 
 import java.io.InputStream;
 
+import com.marklogic.io.ByteSource;
 import com.marklogic.xcc.types.ItemType;
 import com.marklogic.xcc.types.XdmNode;
 
@@ -28,4 +29,8 @@ abstract public class AbstractStreamableNodeItem extends AbstractStreamableItem
     public AbstractStreamableNodeItem(ItemType type, InputStream stream) {
         super(type, stream);
     }
+
+    public AbstractStreamableNodeItem(ItemType type, ByteSource source) {
+        super(type, source);
+    }
 }
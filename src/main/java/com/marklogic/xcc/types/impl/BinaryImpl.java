@@ -21,6 +21,8 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
 import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.ParserConfigurationException;
@@ -28,33 +30,61 @@ import javax.xml.parsers.ParserConfigurationException;
 import org.w3c.dom.Node;
 import org.xml.sax.SAXException;
 
+import com.marklogic.http.PartInputStream;
+import com.marklogic.io.ByteBufferInputStream;
+import com.marklogic.io.ByteSource;
 import com.marklogic.io.IOHelper;
 import com.marklogic.xcc.types.ValueType;
 import com.marklogic.xcc.types.XdmBinary;
 
-public class BinaryImpl extends AbstractItem implements XdmBinary, StreamableItem {
+public class BinaryImpl extends AbstractItem implements XdmBinary, StreamableItem, StreamedValue {
     private InputStream stream;
+    private ByteSource source = null;
     private byte[] bytes = null;
+    private final long length;
 
     public BinaryImpl(InputStream bodyStream, boolean cache) {
+        this(bodyStream, cache, -1);
+    }
+
+    /**
+     * @param length
+     *            The length of the body in bytes if known, otherwise a negative value. Used to
+     *            size the buffer when the item is cached.
+     */
+    public BinaryImpl(InputStream bodyStream, boolean cache, long length) {
         super(ValueType.BINARY);
 
         this.stream = bodyStream;
+        this.length = length;
 
         if (cache) {
             asBinaryData(); // sucks the data off the stream and buffers it
         }
     }
 
+    /**
+     * @param source
+     *            The bytes of the value. They are read from the source each time the value is
+     *            streamed, and only buffered if the whole value is asked for.
+     */
+    public BinaryImpl(ByteSource source) {
+        super(ValueType.BINARY);
+
+        this.source = source;
+        this.length = source.length();
+    }
+
     // -----------------------------------------------------
     // StreamableItem
 
     public boolean isFetchable() {
-        return ((bytes != null) || (stream != null));
+        return ((bytes != null) || (stream != null) || (source != null));
     }
 
     public void invalidate() {
         bytes = null;
+        source = null;
 
         if (stream != null) {
             try {
@@ -84,39 +114,137 @@ public class BinaryImpl extends AbstractItem implements XdmBinary, StreamableIte
             return new ByteArrayInputStream(bytes);
         }
 
-        InputStream tmp = stream;
-
-        stream = null;
+        try {
+            return (takeStream());
+        } catch (IOException e) {
+            throw new RuntimeException("Could not open binary source", e);
+        }
+    }
 
-        return (tmp);
+    public ByteSource getValueSource() {
+        return (bytes == null) ? source : null;
     }
 
     public String asString() {
         try {
-            return new String(asBinaryData(), "UTF-8");
+            return new String(bufferedBytes(), "UTF-8");
         } catch (UnsupportedEncodingException e) {
-            return new String(asBinaryData());
+            return new String(bufferedBytes());
         }
     }
 
     public byte[] asBinaryData() {
+        return bufferedBytes().clone();
+    }
+
+    public ByteBuffer asByteBuffer() {
+        return ByteBuffer.wrap(bufferedBytes()).asReadOnlyBuffer();
+    }
+
+    public long transferTo(WritableByteChannel channel) throws IOException {
+        if (bytes != null) {
+            return writeFully(ByteBuffer.wrap(bytes), channel);
+        }
+
+        if ((stream == null) && (source == null)) {
+            throw new IllegalStateException("stream data has already been consumed");
+        }
+
+        InputStream tmp = takeStream();
+
+        if (tmp instanceof PartInputStream) {
+            return ((PartInputStream)tmp).transferTo(channel);
+        }
+
+        if (tmp instanceof ByteBufferInputStream) {
+            ByteBuffer buffer = ((ByteBufferInputStream)tmp).getBuffer();
+            long written = writeFully(buffer, channel);
+
+            //noinspection ResultOfMethodCallIgnored
+            tmp.skip(written);
+
+            return written;
+        }
+
+        byte[] buffer = new byte[10240];
+        ByteBuffer wrapper = ByteBuffer.wrap(buffer);
+        long written = 0;
+        int rc;
+
+        try {
+            while ((rc = tmp.read(buffer)) > 0) {
+                wrapper.clear().limit(rc);
+                written += writeFully(wrapper, channel);
+            }
+        } finally {
+            if (source != null) {
+                tmp.close();
+            }
+        }
+
+        return written;
+    }
+
+    // -----------------------------------------------------
+
+    private byte[] bufferedBytes() {
         if (bytes != null) {
-            return bytes.clone();
+            return bytes;
         }
 
-        if (stream == null) {
+        if ((stream == null) && (source == null)) {
             throw new IllegalStateException("stream data has already been consumed");
         }
 
         try {
-            bytes = IOHelper.byteArrayFromStream(stream);
+            InputStream tmp = takeStream();
+
+            try {
+                bytes = IOHelper.byteArrayFromStream(tmp, length);
+            } finally {
+                if (source != null) {
+                    tmp.close();
+                }
+            }
         } catch (IOException e) {
             throw new RuntimeException("IOException buffering binary data", e);
         }
 
+        source = null;
+
+        return bytes;
+    }
+
+    /**
+     * A stream of the value's bytes, opened from the source if there is one, otherwise the
+     * stream the value was made from, which can only be taken once.
+     */
+    private InputStream takeStream() throws IOException {
+        if (source != null) {
+            InputStream tmp = source.openStream();
+
+            if (!source.isReplayable()) {
+                source = null;
+            }
+
+            return tmp;
+        }
+
+        InputStream tmp = stream;
+
         stream = null;
 
-        return bytes.clone();
+        return tmp;
+    }
+
+    private static long writeFully(ByteBuffer buffer, WritableByteChannel channel) throws IOException {
+        long written = 0;
+
+        while (buffer.hasRemaining()) {
+            written += channel.write(buffer);
+        }
+
+        return written;
     }
 
     public Node asW3cNode(DocumentBuilder docBuilder) throws IOException, SAXException {
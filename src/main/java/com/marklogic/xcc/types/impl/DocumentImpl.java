@@ -21,11 +21,17 @@ import java.io.InputStream;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 
 import org.w3c.dom.Document;
 import org.w3c.dom.Node;
+import org.xml.sax.ContentHandler;
 import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
 
+import com.marklogic.io.ByteSource;
 import com.marklogic.xcc.types.ValueType;
 import com.marklogic.xcc.types.XdmDocument;
 
@@ -38,6 +44,10 @@ public class DocumentImpl extends AbstractStreamableNodeItem implements XdmDocum
         super(ValueType.DOCUMENT, stream);
     }
 
+    public DocumentImpl(ByteSource source) {
+        super(ValueType.DOCUMENT, source);
+    }
+
     @Override
     public Document asW3cDocument(DocumentBuilder docBuilder) throws IOException, SAXException {
         return docBuilder.parse(asInputStream());
@@ -57,4 +67,20 @@ public class DocumentImpl extends AbstractStreamableNodeItem implements XdmDocum
     public Node asW3cNode() throws ParserConfigurationException, IOException, SAXException {
         return asW3cDocument();
     }
+
+    public XMLStreamReader asXMLStreamReader(XMLInputFactory factory) throws XMLStreamException {
+        return XmlParsing.newXMLStreamReader(this, factory);
+    }
+
+    public XMLStreamReader asXMLStreamReader() throws XMLStreamException {
+        return asXMLStreamReader(null);
+    }
+
+    public void parse(XMLReader reader) throws IOException, SAXException {
+        XmlParsing.parse(this, reader);
+    }
+
+    public void parse(ContentHandler handler) throws ParserConfigurationException, IOException, SAXException {
+        XmlParsing.parse(this, handler);
+    }
 }
@@ -21,12 +21,18 @@ import java.io.InputStream;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
+import org.xml.sax.ContentHandler;
 import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
 
+import com.marklogic.io.ByteSource;
 import com.marklogic.xcc.types.ValueType;
 import com.marklogic.xcc.types.XdmElement;
 
@@ -39,6 +45,10 @@ public class ElementImpl extends AbstractStreamableNodeItem implements XdmElemen
         super(ValueType.ELEMENT, stream);
     }
 
+    public ElementImpl(ByteSource source) {
+        super(ValueType.ELEMENT, source);
+    }
+
     public Node asW3cNode(DocumentBuilder docBuilder) throws IOException, SAXException {
         return asW3cElement(docBuilder);
     }
@@ -62,4 +72,20 @@ public class ElementImpl extends AbstractStreamableNodeItem implements XdmElemen
     public Document asW3cDocument() throws ParserConfigurationException, IOException, SAXException {
         return asW3cDocument(DocumentBuilderFactory.newInstance().newDocumentBuilder());
     }
+
+    public XMLStreamReader asXMLStreamReader(XMLInputFactory factory) throws XMLStreamException {
+        return XmlParsing.newXMLStreamReader(this, factory);
+    }
+
+    public XMLStreamReader asXMLStreamReader() throws XMLStreamException {
+        return asXMLStreamReader(null);
+    }
+
+    public void parse(XMLReader reader) throws IOException, SAXException {
+        XmlParsing.parse(this, reader);
+    }
+
+    public void parse(ContentHandler handler) throws ParserConfigurationException, IOException, SAXException {
+        XmlParsing.parse(this, handler);
+    }
 }
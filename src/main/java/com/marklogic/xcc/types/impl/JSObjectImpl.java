@@ -18,11 +18,13 @@ package com.marklogic.xcc.types.impl;
 import java.io.IOException;
 
 import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.databind.JsonMappingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.marklogic.xcc.types.JSObject;
 import com.marklogic.xcc.types.JsonItem;
+import com.marklogic.xcc.types.JsonMapping;
 import com.marklogic.xcc.types.ValueType;
 
 public class JSObjectImpl extends AbstractStringItem 
@@ -35,7 +37,7 @@ implements JSObject, JsonItem {
     @Override
     public JsonNode asJsonNode() 
     throws JsonParseException, JsonMappingException, IOException {
-        return asJsonNode(new ObjectMapper());
+        return asJsonNode(JsonMapping.getObjectMapper());
     }
 
     @Override
@@ -43,4 +45,22 @@ implements JSObject, JsonItem {
     throws JsonParseException, JsonMappingException, IOException {
         return mapper.readValue(value, JsonNode.class);
     }
+
+    public JsonParser asJsonParser() throws IOException {
+        return asJsonParser(JsonMapping.getObjectMapper());
+    }
+
+    public JsonParser asJsonParser(ObjectMapper mapper) throws IOException {
+        return mapper.getFactory().createParser(value);
+    }
+
+    public <T> T asObject(Class<T> valueType) 
+    throws JsonParseException, JsonMappingException, IOException {
+        return asObject(valueType, JsonMapping.getObjectMapper());
+    }
+
+    public <T> T asObject(Class<T> valueType, ObjectMapper mapper) 
+    throws JsonParseException, JsonMappingException, IOException {
+        return mapper.readValue(value, valueType);
+    }
 }
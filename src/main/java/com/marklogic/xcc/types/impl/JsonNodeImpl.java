@@ -10,11 +10,13 @@ import org.w3c.dom.Node;
 import org.xml.sax.SAXException;
 
 import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.databind.JsonMappingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.marklogic.xcc.types.ItemType;
 import com.marklogic.xcc.types.JsonItem;
+import com.marklogic.xcc.types.JsonMapping;
 
 /*
  * Copyright 2003-2016 MarkLogic Corporation
@@ -57,12 +59,39 @@ implements JsonItem {
 	@Override
 	public JsonNode asJsonNode() throws JsonParseException,
 			JsonMappingException, IOException {
-	    return asJsonNode(new ObjectMapper());
+	    return asJsonNode(JsonMapping.getObjectMapper());
 	}
 
 	@Override
 	public JsonNode asJsonNode(ObjectMapper mapper) throws JsonParseException,
 			JsonMappingException, IOException {
-		return mapper.readValue(asInputStream(), JsonNode.class);
+		return asObject(JsonNode.class, mapper);
+	}
+
+	public JsonParser asJsonParser() throws IOException {
+		return asJsonParser(JsonMapping.getObjectMapper());
+	}
+
+	public JsonParser asJsonParser(ObjectMapper mapper) throws IOException {
+		// a cached value is parsed as it is, rather than encoded back to UTF-8 bytes
+		if (stringVal != null) {
+			return mapper.getFactory().createParser(stringVal);
+		}
+
+		return mapper.getFactory().createParser(asInputStream());
+	}
+
+	public <T> T asObject(Class<T> valueType) throws JsonParseException,
+			JsonMappingException, IOException {
+		return asObject(valueType, JsonMapping.getObjectMapper());
+	}
+
+	public <T> T asObject(Class<T> valueType, ObjectMapper mapper)
+			throws JsonParseException, JsonMappingException, IOException {
+		if (stringVal != null) {
+			return mapper.readValue(stringVal, valueType);
+		}
+
+		return mapper.readValue(asInputStream(), valueType);
 	}
 }
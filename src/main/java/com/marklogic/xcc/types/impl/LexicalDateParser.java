@@ -0,0 +1,285 @@
+/*
+ * Copyright 2003-2016 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.xcc.types.impl;
+
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * <p>
+ * A hand-written parser for the canonical lexical forms of the xs:date, xs:dateTime, xs:time and
+ * Gregorian types, as the server serializes them. It produces the same results as the
+ * {@link java.text.SimpleDateFormat} patterns in {@link AbstractDateItem}, but without creating a
+ * formatter, a {@link java.text.ParsePosition} or a {@link GregorianCalendar} per value. Each thread
+ * re-uses one parser instance and its calendar.
+ * </p>
+ * <p>
+ * Values that are not in canonical form (one digit fields, signed or short years and so on) are
+ * rejected by {@link #parse(String, int)}, and the caller falls back to the SimpleDateFormat path.
+ * </p>
+ */
+final class LexicalDateParser {
+    static final int DATE = 0; // yyyy-MM-dd
+    static final int DATETIME = 1; // yyyy-MM-dd'T'HH:mm:ss
+    static final int TIME = 2; // HH:mm:ss
+    static final int GDAY = 3; // ---dd
+    static final int GMONTH = 4; // --MM
+    static final int GMONTHDAY = 5; // --MM-dd
+    static final int GYEAR = 6; // yyyy
+    static final int GYEARMONTH = 7; // yyyy-MM
+
+    private static final int MAX_YEAR_DIGITS = 9;
+    private static final int MAX_CACHED_ZONES = 2048;
+
+    private static final ConcurrentMap<String, TimeZone> zones = new ConcurrentHashMap<String, TimeZone>();
+
+    private static final ThreadLocal<LexicalDateParser> parsers = new ThreadLocal<LexicalDateParser>() {
+        @Override
+        protected LexicalDateParser initialValue() {
+            return new LexicalDateParser();
+        }
+    };
+
+    private final GregorianCalendar calendar = new GregorianCalendar();
+    private TimeZone calendarZone = null;
+
+    private int year;
+    private int month;
+    private int day;
+    private int hour;
+    private int minute;
+    private int second;
+    private int millis;
+    private int position;
+
+    private LexicalDateParser() {
+    }
+
+    static LexicalDateParser get() {
+        return parsers.get();
+    }
+
+    // ------------------------------------------------------------
+
+    /**
+     * Parse the fields of value for the given kind. After a successful parse,
+     * {@link #getPosition()} is the index of the first character following the fields (and the
+     * fractional seconds, if any).
+     * 
+     * @return false if value is not in the canonical form of the given kind.
+     */
+    boolean parse(String value, int kind) {
+        year = 1970;
+        month = 1;
+        day = 1;
+        hour = minute = second = millis = 0;
+        position = 0;
+
+        switch (kind) {
+        case DATE:
+            return parseYear(value) && literal(value, '-') && (month = twoDigits(value)) >= 0
+                    && literal(value, '-') && (day = twoDigits(value)) >= 0 && fraction(value);
+        case DATETIME:
+            return parseYear(value) && literal(value, '-') && (month = twoDigits(value)) >= 0
+                    && literal(value, '-') && (day = twoDigits(value)) >= 0 && literal(value, 'T')
+                    && parseTime(value) && fraction(value);
+        case TIME:
+            return parseTime(value) && fraction(value);
+        case GDAY:
+            return literal(value, '-') && literal(value, '-') && literal(value, '-')
+                    && (day = twoDigits(value)) >= 0;
+        case GMONTH:
+            return literal(value, '-') && literal(value, '-') && (month = twoDigits(value)) >= 0;
+        case GMONTHDAY:
+            return literal(value, '-') && literal(value, '-') && (month = twoDigits(value)) >= 0
+                    && literal(value, '-') && (day = twoDigits(value)) >= 0;
+        case GYEAR:
+            return parseYear(value);
+        case GYEARMONTH:
+            return parseYear(value) && literal(value, '-') && (month = twoDigits(value)) >= 0;
+        default:
+            throw new IllegalArgumentException("Unknown lexical form: " + kind);
+        }
+    }
+
+    int getPosition() {
+        return position;
+    }
+
+    /**
+     * The instant described by the parsed fields, interpreted as local time in the given zone.
+     * Field values are resolved leniently, as SimpleDateFormat does (24:00:00 is midnight of the
+     * following day, for instance).
+     */
+    long toMillis(TimeZone tz) {
+        if (calendarZone != tz) {
+            calendar.setTimeZone(tz);
+            calendarZone = tz;
+        }
+
+        calendar.clear();
+        calendar.set(year, month - 1, day, hour, minute, second);
+
+        return calendar.getTimeInMillis() + millis;
+    }
+
+    // ------------------------------------------------------------
+
+    /**
+     * The {@link TimeZone} for a trailing zone designator, such as "Z" or "-05:00", as
+     * <code>TimeZone.getTimeZone("GMT" + suffix)</code> would return it. Zones are looked up once
+     * and cached, to stay clear of the lock inside TimeZone.getTimeZone(). The caller gets its own
+     * copy, since TimeZone objects are mutable.
+     */
+    static TimeZone zoneForSuffix(String suffix) {
+        TimeZone zone = zones.get(suffix);
+
+        if (zone == null) {
+            zone = TimeZone.getTimeZone("GMT" + suffix);
+
+            if (zones.size() < MAX_CACHED_ZONES) {
+                zones.putIfAbsent(suffix, zone);
+            }
+        }
+
+        return (TimeZone)zone.clone();
+    }
+
+    /**
+     * SimpleDateFormat uses the calendar system of the locale, which is not Gregorian for a few
+     * locales (Thai Buddhist and Japanese Imperial). Values for those are left to the slow path.
+     */
+    static boolean isGregorianLocale(Locale locale) {
+        if ("th".equals(locale.getLanguage()) && "TH".equals(locale.getCountry())) {
+            return false;
+        }
+
+        if ("ja".equals(locale.getLanguage()) && "JP".equals(locale.getCountry())
+                && "JP".equals(locale.getVariant())) {
+            return false;
+        }
+
+        String type = locale.getUnicodeLocaleType("ca");
+
+        return (type == null) || type.equals("gregory");
+    }
+
+    /**
+     * The number of milliseconds, rounded half-up, in a string of fractional second digits.
+     * Returns 1000 if the fraction rounds up to a whole second.
+     */
+    static int millisFromFraction(String value, int start, int end) {
+        int result = 0;
+
+        for (int i = 0; i < 3; i++) {
+            result *= 10;
+
+            if ((start + i) < end) {
+                result += value.charAt(start + i) - '0';
+            }
+        }
+
+        if (((start + 3) < end) && (value.charAt(start + 3) >= '5')) {
+            result++;
+        }
+
+        return result;
+    }
+
+    // ------------------------------------------------------------
+
+    private boolean parseTime(String value) {
+        return (hour = twoDigits(value)) >= 0 && literal(value, ':') && (minute = twoDigits(value)) >= 0
+                && literal(value, ':') && (second = twoDigits(value)) >= 0;
+    }
+
+    private boolean parseYear(String value) {
+        int start = position;
+        int result = 0;
+
+        while ((position < value.length()) && isDigit(value.charAt(position))) {
+            if ((position - start) == MAX_YEAR_DIGITS) {
+                return false;
+            }
+
+            result = (result * 10) + (value.charAt(position++) - '0');
+        }
+
+        if ((position - start) < 4) {
+            return false;
+        }
+
+        year = result;
+
+        return true;
+    }
+
+    private int twoDigits(String value) {
+        if ((position + 2) > value.length()) {
+            return -1;
+        }
+
+        char hi = value.charAt(position);
+        char lo = value.charAt(position + 1);
+
+        if (!isDigit(hi) || !isDigit(lo)) {
+            return -1;
+        }
+
+        // a third digit is not canonical
+        if (((position + 2) < value.length()) && isDigit(value.charAt(position + 2))) {
+            return -1;
+        }
+
+        position += 2;
+
+        return ((hi - '0') * 10) + (lo - '0');
+    }
+
+    private boolean literal(String value, char c) {
+        if ((position < value.length()) && (value.charAt(position) == c)) {
+            position++;
+
+            return true;
+        }
+
+        return false;
+    }
+
+    private boolean fraction(String value) {
+        if ((position >= value.length()) || (value.charAt(position) != '.')) {
+            return true;
+        }
+
+        int start = ++position;
+
+        while ((position < value.length()) && isDigit(value.charAt(position))) {
+            position++;
+        }
+
+        millis = millisFromFraction(value, start, position);
+
+        return true;
+    }
+
+    private static boolean isDigit(char c) {
+        return (c >= '0') && (c <= '9');
+    }
+}
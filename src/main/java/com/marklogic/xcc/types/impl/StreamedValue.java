@@ -0,0 +1,31 @@
+/*
+ * Copyright 2003-2016 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.xcc.types.impl;
+
+import com.marklogic.io.ByteSource;
+
+/**
+ * A value that may be backed by a {@link ByteSource} rather than a String. When it is used as an
+ * external variable, the bytes are URL-encoded into the request as they are read, so the value
+ * is never held in memory as a whole.
+ */
+public interface StreamedValue {
+    /**
+     * @return The UTF-8 bytes of the value's lexical form, or null if the value is held as a
+     *         String.
+     */
+    ByteSource getValueSource();
+}
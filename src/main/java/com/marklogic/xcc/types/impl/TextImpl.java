@@ -26,6 +26,7 @@ import org.w3c.dom.Node;
 import org.w3c.dom.Text;
 import org.xml.sax.SAXException;
 
+import com.marklogic.io.ByteSource;
 import com.marklogic.xcc.types.ValueType;
 import com.marklogic.xcc.types.XdmText;
 
@@ -38,6 +39,10 @@ public class TextImpl extends AbstractStreamableNodeItem implements XdmText {
         super(ValueType.TEXT, stream);
     }
 
+    public TextImpl(ByteSource source) {
+        super(ValueType.TEXT, source);
+    }
+
     public Text asW3cText(DocumentBuilder docBuilder) {
         return docBuilder.newDocument().createTextNode(asString());
     }
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2003-2016 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.xcc.types.impl;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.xml.sax.ContentHandler;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+
+/**
+ * Streaming parse support shared by the XML node items. A cached value is parsed from its String,
+ * otherwise the parser reads the item's stream, consuming it.
+ */
+final class XmlParsing {
+    private static final XMLInputFactory inputFactory = XMLInputFactory.newInstance();
+    private static final SAXParserFactory saxParserFactory = SAXParserFactory.newInstance();
+
+    // Items come from the server, there is nothing for the parser to fetch from elsewhere
+    static {
+        inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+        inputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+
+        saxParserFactory.setNamespaceAware(true);
+        disableFeature("http://xml.org/sax/features/external-general-entities");
+        disableFeature("http://xml.org/sax/features/external-parameter-entities");
+    }
+
+    private XmlParsing() {
+    }
+
+    // A parser that does not recognize the feature is left as it is
+    private static void disableFeature(String feature) {
+        try {
+            saxParserFactory.setFeature(feature, false);
+        } catch (ParserConfigurationException e) {
+            // not supported
+        } catch (SAXException e) {
+            // not recognized or not supported
+        }
+    }
+
+    static XMLStreamReader newXMLStreamReader(AbstractStreamableItem item, XMLInputFactory factory)
+            throws XMLStreamException {
+        XMLInputFactory f = (factory == null) ? inputFactory : factory;
+
+        if (item.stringVal != null) {
+            return f.createXMLStreamReader(new StringReader(item.stringVal));
+        }
+
+        return f.createXMLStreamReader(item.asInputStream());
+    }
+
+    static void parse(AbstractStreamableItem item, ContentHandler handler) throws ParserConfigurationException,
+            IOException, SAXException {
+        XMLReader reader;
+
+        synchronized (saxParserFactory) {
+            reader = saxParserFactory.newSAXParser().getXMLReader();
+        }
+
+        reader.setContentHandler(handler);
+
+        parse(item, reader);
+    }
+
+    static void parse(AbstractStreamableItem item, XMLReader reader) throws IOException, SAXException {
+        if (item.stringVal != null) {
+            reader.parse(new InputSource(new StringReader(item.stringVal)));
+        } else {
+            reader.parse(new InputSource(item.asInputStream()));
+        }
+    }
+}
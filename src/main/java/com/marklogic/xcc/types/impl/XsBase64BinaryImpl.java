@@ -15,21 +15,119 @@
  */
 package com.marklogic.xcc.types.impl;
 
+import java.io.IOException;
+import java.io.InputStream;
+
 import com.marklogic.io.Base64;
+import com.marklogic.io.ByteSource;
+import com.marklogic.io.IOHelper;
 import com.marklogic.xcc.types.ValueType;
 import com.marklogic.xcc.types.XSBase64Binary;
 
-public class XsBase64BinaryImpl extends AbstractStringItem implements XSBase64Binary {
+public class XsBase64BinaryImpl extends AbstractStringItem implements XSBase64Binary, StreamedValue {
+    private ByteSource binary = null;
+    private ByteSource source = null;
+
     public XsBase64BinaryImpl(String bodyString) {
+        this(bodyString, true);
+    }
+
+    public XsBase64BinaryImpl(String bodyString, boolean validate) {
         super(ValueType.XS_BASE64_BINARY, bodyString);
-        Base64.decode(bodyString); // DAL: here just to test if the data is valid bug: 26072
+        if (validate) {
+            Base64.decode(bodyString); // DAL: here just to test if the data is valid bug: 26072
+        }
     }
     
     public XsBase64BinaryImpl(byte[] bodyBytes) {
         super(ValueType.XS_BASE64_BINARY, Base64.encodeBytes(bodyBytes, 0, bodyBytes.length) );
     }
 
+    /**
+     * @param source
+     *            The binary data, which is encoded as it is read. It is only held in memory if the
+     *            value is asked for as a String or byte array.
+     */
+    public XsBase64BinaryImpl(ByteSource source) {
+        super(ValueType.XS_BASE64_BINARY, null);
+
+        this.binary = source;
+        this.source = new EncodedSource(source);
+    }
+
+    @Override
+    public boolean isCached() {
+        return (value != null);
+    }
+
+    @Override
+    public String asString() {
+        if (value == null) {
+            byte[] encoded = bytesFrom(source);
+
+            value = IOHelper.utf8String(encoded, 0, encoded.length);
+
+            source = null;
+        }
+
+        return value;
+    }
+
     public byte[] asBinaryData() {
+        if ((value == null) && binary.isReplayable()) {
+            return bytesFrom(binary);
+        }
+
         return Base64.decode(asString());
     }
+
+    public ByteSource getValueSource() {
+        return (value == null) ? source : null;
+    }
+
+    private static byte[] bytesFrom(ByteSource source) {
+        try {
+            InputStream in = source.openStream();
+
+            try {
+                return IOHelper.byteArrayFromStream(in, source.length());
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("IOException reading binary data", e);
+        }
+    }
+
+    /**
+     * The Base64 encoding of another source, with the same line breaks as
+     * {@link Base64#encodeBytes(byte[])}.
+     */
+    private static class EncodedSource extends ByteSource {
+        private final ByteSource binary;
+
+        EncodedSource(ByteSource binary) {
+            this.binary = binary;
+        }
+
+        @Override
+        public InputStream openStream() throws IOException {
+            return new Base64.InputStream(binary.openStream(), Base64.ENCODE);
+        }
+
+        @Override
+        public boolean isReplayable() {
+            return binary.isReplayable();
+        }
+
+        @Override
+        public long length() {
+            return -1;
+        }
+
+        @Override
+        public String toString() {
+            return "base64 of " + binary;
+        }
+    }
 }
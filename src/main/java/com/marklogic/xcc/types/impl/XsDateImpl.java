@@ -24,9 +24,15 @@ import com.marklogic.xcc.types.XSDate;
 
 public class XsDateImpl extends AbstractDateItem implements XSDate {
     public XsDateImpl(String bodyString, TimeZone tz, Locale locale) {
+        this(bodyString, tz, locale, true);
+    }
+
+    public XsDateImpl(String bodyString, TimeZone tz, Locale locale, boolean validate) {
         super(ValueType.XS_DATE, bodyString, tz, locale);
 
-        dateFromDateString(bodyString); // will throw if string is not valid
+        if (validate) {
+            dateFromDateString(bodyString); // will throw if string is not valid
+        }
     }
 
     public Date asDate() {
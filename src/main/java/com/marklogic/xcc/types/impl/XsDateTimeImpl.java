@@ -24,9 +24,15 @@ import com.marklogic.xcc.types.XSDateTime;
 
 public class XsDateTimeImpl extends AbstractDateItem implements XSDateTime {
     public XsDateTimeImpl(String bodyString, TimeZone timezone, Locale locale) {
+        this(bodyString, timezone, locale, true);
+    }
+
+    public XsDateTimeImpl(String bodyString, TimeZone timezone, Locale locale, boolean validate) {
         super(ValueType.XS_DATE_TIME, bodyString, timezone, locale);
 
-        dateFromDateTimeString(bodyString); // will throw if string is not valid
+        if (validate) {
+            dateFromDateTimeString(bodyString); // will throw if string is not valid
+        }
     }
 
     public Date asDate() {
@@ -21,7 +21,15 @@ import com.marklogic.xcc.types.XdmDuration;
 
 public class XsDayTimeDurationImpl extends AbstractDurationItem implements XSDayTimeDuration {
     public XsDayTimeDurationImpl(String bodyString) {
-        super(ValueType.XS_DAY_TIME_DURATION, bodyString);
+        this(bodyString, true);
+    }
+
+    public XsDayTimeDurationImpl(String bodyString, boolean validate) {
+        super(ValueType.XS_DAY_TIME_DURATION, bodyString, validate);
+
+        if (!validate) {
+            return;
+        }
 
         XdmDuration duration = asDuration();
 
@@ -22,12 +22,22 @@ import com.marklogic.xcc.types.ValueType;
 import com.marklogic.xcc.types.XSDecimal;
 
 public class XsDecimalImpl extends AbstractStringItem implements XSDecimal {
-    private final BigDecimal value;
+    private BigDecimal value;
 
     public XsDecimalImpl(String bodyString) {
+        this(bodyString, true);
+    }
+
+    /**
+     * Construct from the lexical form. If validate is false the value is trusted (it came from the
+     * server) and is not parsed until {@link #asBigDecimal()} is called.
+     */
+    public XsDecimalImpl(String bodyString, boolean validate) {
         super(ValueType.XS_DECIMAL, bodyString);
 
-        this.value = new BigDecimal(bodyString);
+        if (validate) {
+            this.value = new BigDecimal(bodyString);
+        }
     }
 
     public XsDecimalImpl(Object value) {
@@ -43,6 +53,10 @@ public class XsDecimalImpl extends AbstractStringItem implements XSDecimal {
     }
 
     public BigDecimal asBigDecimal() {
+        if (value == null) {
+            value = new BigDecimal(asString());
+        }
+
         return value;
     }
 }
@@ -22,27 +22,29 @@ import com.marklogic.xcc.types.ValueType;
 import com.marklogic.xcc.types.XSDouble;
 
 public class XsDoubleImpl extends AbstractStringItem implements XSDouble {
-    private final Double value;
-    private final BigDecimal bigDecimalValue;
-    private final NumberFormatException formatException;
+    // a mantissa of this many digits always fits exactly in a double
+    private static final int MAX_EXACT_DIGITS = 15;
+    // the powers of ten that are exact as doubles
+    private static final double[] EXACT_POWERS_OF_TEN = { 1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9,
+            1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
 
-    public XsDoubleImpl(String bodyString) {
-        super(ValueType.XS_DOUBLE, bodyString);
+    private Double value;
+    private BigDecimal bigDecimalValue;
 
-        this.value = Double.valueOf(scrubbedFloatValue(bodyString));
+    public XsDoubleImpl(String bodyString) {
+        this(bodyString, true);
+    }
 
-        BigDecimal tmpBigDecimal = null;
-        NumberFormatException tmpEx = null;
+    /**
+     * Construct from the lexical form. If validate is false the value is trusted (it came from the
+     * server) and is not parsed until a typed accessor is called.
+     */
+    public XsDoubleImpl(String bodyString, boolean validate) {
+        super(ValueType.XS_DOUBLE, bodyString);
 
-        try {
-            tmpBigDecimal = new BigDecimal(bodyString);
-        } catch (NumberFormatException e) {
-            // Double value parsed, must be NaN or +-INF, leave as null
-            tmpEx = e;
+        if (validate) {
+            this.value = Double.valueOf(scrubbedFloatValue(bodyString));
         }
-
-        this.bigDecimalValue = tmpBigDecimal;
-        this.formatException = tmpEx;
     }
 
     public XsDoubleImpl(Object value) {
@@ -52,36 +54,152 @@ public class XsDoubleImpl extends AbstractStringItem implements XSDouble {
                 || (value instanceof Float) || (value instanceof BigDecimal) || (value instanceof BigInteger)
                 || (value instanceof String)) {
             this.value = new Double(value.toString());
-
-            BigDecimal tmpBigDecimal = null;
-            NumberFormatException tmpEx = null;
-
-            try {
-                tmpBigDecimal = new BigDecimal(value.toString());
-            } catch (NumberFormatException e) {
-                tmpEx = e;
-            }
-
-            this.bigDecimalValue = tmpBigDecimal;
-            this.formatException = tmpEx;
         } else {
             throw new IllegalArgumentException("Cannot construct XSDouble from " + value.getClass().getName());
         }
     }
 
     public Double asDouble() {
+        if (value == null) {
+            value = Double.valueOf(scrubbedFloatValue(asString()));
+        }
+
         return (value);
     }
 
     public double asPrimitiveDouble() {
-        return value.doubleValue();
+        if (value != null) {
+            return value.doubleValue();
+        }
+
+        String str = asString();
+
+        return parseDouble(str, 0, str.length());
     }
 
     public BigDecimal asBigDecimal() {
         if (bigDecimalValue == null) {
-            throw formatException;
+            // throws NumberFormatException for NaN and +-INF
+            bigDecimalValue = new BigDecimal(asString());
         }
 
         return bigDecimalValue;
     }
+
+    // -------------------------------------------------
+
+    /**
+     * Parse the lexical form of a double as {@link #asPrimitiveDouble()} does. A plain decimal, with
+     * at most 15 significant digits and a small enough exponent, is worked out directly from its
+     * digits, which gives the correctly rounded result without making a String of it. Anything else
+     * goes through {@link Double#parseDouble(String)}.
+     *
+     * @throws NumberFormatException
+     *             If the characters are not a double.
+     */
+    public static double parseDouble(CharSequence str, int start, int end) {
+        int i = start;
+        boolean negative = false;
+
+        if ((i < end) && ((str.charAt(i) == '-') || (str.charAt(i) == '+'))) {
+            negative = (str.charAt(i) == '-');
+            i++;
+        }
+
+        long mantissa = 0;
+        int significantDigits = 0;
+        int digits = 0;
+        int scale = 0;
+        boolean fraction = false;
+
+        for (; i < end; i++) {
+            char c = str.charAt(i);
+
+            if ((c == '.') && !fraction) {
+                fraction = true;
+                continue;
+            }
+
+            if ((c < '0') || (c > '9')) {
+                break;
+            }
+
+            digits++;
+
+            if ((mantissa != 0) || (c != '0')) {
+                if (++significantDigits > MAX_EXACT_DIGITS) {
+                    return parseSlowly(str, start, end);
+                }
+
+                mantissa = (mantissa * 10) + (c - '0');
+            }
+
+            if (fraction) {
+                scale--;
+            }
+        }
+
+        if (digits == 0) {
+            return parseSlowly(str, start, end);
+        }
+
+        if ((i < end) && ((str.charAt(i) == 'e') || (str.charAt(i) == 'E'))) {
+            int exponent = 0;
+            int exponentDigits = 0;
+            boolean negativeExponent = false;
+
+            i++;
+
+            if ((i < end) && ((str.charAt(i) == '-') || (str.charAt(i) == '+'))) {
+                negativeExponent = (str.charAt(i) == '-');
+                i++;
+            }
+
+            for (; (i < end) && (str.charAt(i) >= '0') && (str.charAt(i) <= '9'); i++) {
+                if (++exponentDigits > 3) {
+                    return parseSlowly(str, start, end);
+                }
+
+                exponent = (exponent * 10) + (str.charAt(i) - '0');
+            }
+
+            if (exponentDigits == 0) {
+                return parseSlowly(str, start, end);
+            }
+
+            scale += negativeExponent ? -exponent : exponent;
+        }
+
+        if (i != end) {
+            return parseSlowly(str, start, end);
+        }
+
+        double value;
+
+        if (mantissa == 0) {
+            value = 0;
+        } else if ((scale >= 0) && (scale < EXACT_POWERS_OF_TEN.length)) {
+            value = mantissa * EXACT_POWERS_OF_TEN[scale];
+        } else if ((scale < 0) && (-scale < EXACT_POWERS_OF_TEN.length)) {
+            value = mantissa / EXACT_POWERS_OF_TEN[-scale];
+        } else {
+            return parseSlowly(str, start, end);
+        }
+
+        return negative ? -value : value;
+    }
+
+    private static double parseSlowly(CharSequence str, int start, int end) {
+        String value = str.subSequence(start, end).toString();
+
+        if (value.equalsIgnoreCase("INF") || value.equalsIgnoreCase("+INF")) {
+            return Double.POSITIVE_INFINITY;
+        }
+
+        if (value.equalsIgnoreCase("-INF")) {
+            return Double.NEGATIVE_INFINITY;
+        }
+
+        return Double.parseDouble(value);
+    }
 }
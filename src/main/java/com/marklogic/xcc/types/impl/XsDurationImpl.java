@@ -22,4 +22,8 @@ public class XsDurationImpl extends AbstractDurationItem implements XSDuration {
     public XsDurationImpl(String bodyString) {
         super(ValueType.XS_DURATION, bodyString);
     }
+
+    public XsDurationImpl(String bodyString, boolean validate) {
+        super(ValueType.XS_DURATION, bodyString, validate);
+    }
 }
@@ -22,27 +22,23 @@ import com.marklogic.xcc.types.ValueType;
 import com.marklogic.xcc.types.XSFloat;
 
 public class XsFloatImpl extends AbstractStringItem implements XSFloat {
-    private final Float value;
-    private final BigDecimal bigDecimalValue;
-    private final NumberFormatException formatException;
+    private Float value;
+    private BigDecimal bigDecimalValue;
 
     public XsFloatImpl(String bodyString) {
-        super(ValueType.XS_FLOAT, bodyString);
-
-        this.value = Float.valueOf(scrubbedFloatValue(bodyString));
+        this(bodyString, true);
+    }
 
-        BigDecimal tmpBigDecimal = null;
-        NumberFormatException tmpEx = null;
+    /**
+     * Construct from the lexical form. If validate is false the value is trusted (it came from the
+     * server) and is not parsed until a typed accessor is called.
+     */
+    public XsFloatImpl(String bodyString, boolean validate) {
+        super(ValueType.XS_FLOAT, bodyString);
 
-        try {
-            tmpBigDecimal = new BigDecimal(bodyString);
-        } catch (NumberFormatException e) {
-            // Float value parsed, must be NaN or +-INF, leave as null
-            tmpEx = e;
+        if (validate) {
+            this.value = Float.valueOf(scrubbedFloatValue(bodyString));
         }
-
-        this.bigDecimalValue = tmpBigDecimal;
-        this.formatException = tmpEx;
     }
 
     public XsFloatImpl(Object value) {
@@ -52,34 +48,31 @@ public class XsFloatImpl extends AbstractStringItem implements XSFloat {
                 || (value instanceof Float) || (value instanceof BigDecimal) || (value instanceof BigInteger)
                 || (value instanceof String)) {
             this.value = new Float(value.toString());
-
-            BigDecimal tmpBigDecimal = null;
-            NumberFormatException tmpEx = null;
-
-            try {
-                tmpBigDecimal = new BigDecimal(value.toString());
-            } catch (NumberFormatException e) {
-                tmpEx = e;
-            }
-
-            this.bigDecimalValue = tmpBigDecimal;
-            this.formatException = tmpEx;
         } else {
             throw new IllegalArgumentException("Cannot construct XSFloat from " + value.getClass().getName());
         }
     }
 
     public Float asFloat() {
-        return value;
+        if (value == null) {
+            value = Float.valueOf(scrubbedFloatValue(asString()));
+        }
+
+        return (value);
     }
 
     public float asPrimitiveFloat() {
-        return value.floatValue();
+        if (value != null) {
+            return value.floatValue();
+        }
+
+        return Float.parseFloat(scrubbedFloatValue(asString()));
     }
 
     public BigDecimal asBigDecimal() {
         if (bigDecimalValue == null) {
-            throw formatException;
+            // throws NumberFormatException for NaN and +-INF
+            bigDecimalValue = new BigDecimal(asString());
         }
 
         return bigDecimalValue;
@@ -24,9 +24,15 @@ import com.marklogic.xcc.types.XSGDay;
 
 public class XsGDayImpl extends AbstractDateItem implements XSGDay {
     public XsGDayImpl(String bodyString, TimeZone timezone, Locale locale) {
+        this(bodyString, timezone, locale, true);
+    }
+
+    public XsGDayImpl(String bodyString, TimeZone timezone, Locale locale, boolean validate) {
         super(ValueType.XS_GDAY, bodyString, timezone, locale);
 
-        gCalFromGDayString(bodyString);
+        if (validate) {
+            gCalFromGDayString(bodyString);
+        }
     }
 
     public GregorianCalendar asGregorianCalendar() {
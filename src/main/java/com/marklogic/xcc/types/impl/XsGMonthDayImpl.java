@@ -24,9 +24,15 @@ import com.marklogic.xcc.types.XSGMonthDay;
 
 public class XsGMonthDayImpl extends AbstractDateItem implements XSGMonthDay {
     public XsGMonthDayImpl(String bodyString, TimeZone timezone, Locale locale) {
+        this(bodyString, timezone, locale, true);
+    }
+
+    public XsGMonthDayImpl(String bodyString, TimeZone timezone, Locale locale, boolean validate) {
         super(ValueType.XS_GMONTH_DAY, bodyString, timezone, locale);
 
-        gCalFromGMonthDayString(bodyString);
+        if (validate) {
+            gCalFromGMonthDayString(bodyString);
+        }
     }
 
     public GregorianCalendar asGregorianCalendar() {
@@ -24,9 +24,15 @@ import com.marklogic.xcc.types.XSGMonth;
 
 public class XsGMonthImpl extends AbstractDateItem implements XSGMonth {
     public XsGMonthImpl(String bodyString, TimeZone timezone, Locale locale) {
+        this(bodyString, timezone, locale, true);
+    }
+
+    public XsGMonthImpl(String bodyString, TimeZone timezone, Locale locale, boolean validate) {
         super(ValueType.XS_GMONTH, bodyString, timezone, locale);
 
-        gCalFromGMonthString(bodyString);
+        if (validate) {
+            gCalFromGMonthString(bodyString);
+        }
     }
 
     public GregorianCalendar asGregorianCalendar() {
@@ -24,9 +24,15 @@ import com.marklogic.xcc.types.XSGYear;
 
 public class XsGYearImpl extends AbstractDateItem implements XSGYear {
     public XsGYearImpl(String bodyString, TimeZone timezone, Locale locale) {
+        this(bodyString, timezone, locale, true);
+    }
+
+    public XsGYearImpl(String bodyString, TimeZone timezone, Locale locale, boolean validate) {
         super(ValueType.XS_GYEAR, bodyString, timezone, locale);
 
-        gCalFromGYearString(bodyString);
+        if (validate) {
+            gCalFromGYearString(bodyString);
+        }
     }
 
     public GregorianCalendar asGregorianCalendar() {
@@ -24,9 +24,15 @@ import com.marklogic.xcc.types.XSGYearMonth;
 
 public class XsGYearMonthImpl extends AbstractDateItem implements XSGYearMonth {
     public XsGYearMonthImpl(String bodyString, TimeZone timezone, Locale locale) {
+        this(bodyString, timezone, locale, true);
+    }
+
+    public XsGYearMonthImpl(String bodyString, TimeZone timezone, Locale locale, boolean validate) {
         super(ValueType.XS_GYEAR_MONTH, bodyString, timezone, locale);
 
-        gCalFromGYearMonthString(bodyString);
+        if (validate) {
+            gCalFromGYearMonthString(bodyString);
+        }
     }
 
     public GregorianCalendar asGregorianCalendar() {
@@ -20,9 +20,15 @@ import com.marklogic.xcc.types.XSHexBinary;
 
 public class XsHexBinaryImpl extends AbstractStringItem implements XSHexBinary {
     public XsHexBinaryImpl(String bodyString) {
+        this(bodyString, true);
+    }
+
+    public XsHexBinaryImpl(String bodyString, boolean validate) {
         super(ValueType.XS_HEX_BINARY, bodyString);
 
-        validateHex(bodyString);
+        if (validate) {
+            validateHex(bodyString);
+        }
     }
 
     public XsHexBinaryImpl(byte[] body) {
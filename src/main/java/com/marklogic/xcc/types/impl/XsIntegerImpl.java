@@ -21,35 +21,61 @@ import com.marklogic.xcc.types.ValueType;
 import com.marklogic.xcc.types.XSInteger;
 
 public class XsIntegerImpl extends AbstractStringItem implements XSInteger {
+    // longest digit string that always fits in a long
+    private static final int MAX_LONG_DIGITS = 18;
+
     private BigInteger value;
 
     public XsIntegerImpl(String value) {
+        this(value, true);
+    }
+
+    /**
+     * Construct from the lexical form. If validate is false the value is trusted (it came from the
+     * server) and is not parsed until a typed accessor is called.
+     */
+    public XsIntegerImpl(String value, boolean validate) {
         super(ValueType.XS_INTEGER, value);
 
-        this.value = new BigInteger(value);
+        if (validate) {
+            this.value = new BigInteger(value);
+        }
     }
 
     public XsIntegerImpl(Object value) {
         super(ValueType.XS_INTEGER, value.toString());
 
-        if ((value instanceof Integer) || (value instanceof Long) || (value instanceof BigInteger)
-                || (value instanceof String)) {
-            this.value = new BigInteger(value.toString());
+        if (value instanceof BigInteger) {
+            this.value = (BigInteger)value;
+        } else if ((value instanceof Integer) || (value instanceof Long)) {
+            this.value = BigInteger.valueOf(((Number)value).longValue());
+        } else if (value instanceof String) {
+            this.value = new BigInteger((String)value);
         } else {
             throw new IllegalArgumentException("Cannot construct XSInteger from " + value.getClass().getName());
         }
     }
 
     public BigInteger asBigInteger() {
+        if (value == null) {
+            value = new BigInteger(asString());
+        }
+
         return (value);
     }
 
     public Long asLong() {
-        return new Long(value.longValue());
+        return Long.valueOf(asPrimitiveLong());
     }
 
     public long asPrimitiveLong() {
-        return value.longValue();
+        if (value != null) {
+            return value.longValue();
+        }
+
+        String str = asString();
+
+        return parseLong(str, 0, str.length());
     }
 
     public Integer asInteger() {
@@ -59,4 +85,42 @@ public class XsIntegerImpl extends AbstractStringItem implements XSInteger {
     public int asPrimitiveInt() {
         return (int)asPrimitiveLong();
     }
+
+    // -------------------------------------------------
+
+    /**
+     * Parse the lexical form of an integer as {@link #asPrimitiveLong()} does: a value too big for
+     * a long is truncated to its low 64 bits. A digit string short enough to always fit in a long
+     * is parsed directly, without going through a {@link BigInteger}.
+     *
+     * @throws NumberFormatException
+     *             If the characters are not an integer.
+     */
+    public static long parseLong(CharSequence str, int start, int end) {
+        int i = start;
+        boolean negative = false;
+
+        if ((i < end) && ((str.charAt(i) == '-') || (str.charAt(i) == '+'))) {
+            negative = (str.charAt(i) == '-');
+            i++;
+        }
+
+        if ((i == end) || ((end - i) > MAX_LONG_DIGITS)) {
+            return new BigInteger(str.subSequence(start, end).toString()).longValue();
+        }
+
+        long value = 0;
+
+        for (; i < end; i++) {
+            int digit = str.charAt(i) - '0';
+
+            if ((digit < 0) || (digit > 9)) {
+                throw new NumberFormatException("Not an integer: " + str.subSequence(start, end));
+            }
+
+            value = (value * 10) + digit;
+        }
+
+        return negative ? -value : value;
+    }
 }
@@ -24,9 +24,15 @@ import com.marklogic.xcc.types.XSTime;
 
 public class XsTimeImpl extends AbstractDateItem implements XSTime {
     public XsTimeImpl(String bodyString, TimeZone timezone, Locale locale) {
+        this(bodyString, timezone, locale, true);
+    }
+
+    public XsTimeImpl(String bodyString, TimeZone timezone, Locale locale, boolean validate) {
         super(ValueType.XS_TIME, bodyString, timezone, locale);
 
-        dateFromTimeString(bodyString); // will throw if string is not valid
+        if (validate) {
+            dateFromTimeString(bodyString); // will throw if string is not valid
+        }
     }
 
     public Date asDate() {
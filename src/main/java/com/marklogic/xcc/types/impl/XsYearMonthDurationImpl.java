@@ -23,7 +23,15 @@ import com.marklogic.xcc.types.XdmDuration;
 
 public class XsYearMonthDurationImpl extends AbstractDurationItem implements XSYearMonthDuration {
     public XsYearMonthDurationImpl(String bodyString) {
-        super(ValueType.XS_YEAR_MONTH_DURATION, bodyString);
+        this(bodyString, true);
+    }
+
+    public XsYearMonthDurationImpl(String bodyString, boolean validate) {
+        super(ValueType.XS_YEAR_MONTH_DURATION, bodyString, validate);
+
+        if (!validate) {
+            return;
+        }
 
         XdmDuration duration = asDuration();
 